@@ -0,0 +1,171 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.excep.BadPDFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Appends an incremental update to a copy of a PDF. The original bytes are left
+ * untouched: new versions of changed objects follow them, then a
+ * cross-reference section of only those objects whose trailer links to the
+ * previous section. Objects that are removed become free. Unthrottled copying
+ * is left to the file system, which may share the unchanged bytes.
+ *
+ * @author Brendon
+ */
+public class Appender {
+
+  /** Item label for exceptions. */
+  protected final String label;
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected final Throttle throttle;
+  /** New versions of objects by object number, or null if removed. */
+  protected final Map<Integer, byte[]> updates = new TreeMap<>();
+
+  /**
+   * Makes an instance with the given label that copies and writes through the
+   * given throttle, if any.
+   */
+  protected Appender(String label, Throttle throttle) {
+    this.label = label;
+    this.throttle = throttle;
+  }
+
+  /** Adds the given new version of the given object. */
+  protected void update(int number, byte[] bytes) {
+    this.updates.put(number, bytes);
+  }
+
+  /** Adds the removal of the given object. */
+  protected void remove(int number) {
+    this.updates.put(number, null);
+  }
+
+  /**
+   * Copies the PDF at the given path to the other given path, then appends its
+   * updates to the latter.
+   */
+  protected void append(Path in, Path out) throws BadPDFException, IOException {
+    if (this.throttle == null) Files.copy(
+      in,
+      out,
+      StandardCopyOption.REPLACE_EXISTING
+    ); else this.throttle.copy(in, out);
+    try (
+      FileChannel channel = FileChannel.open(
+        out,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      WritableByteChannel output =
+        this.throttle == null ? channel : this.throttle.wrap(channel);
+      Xref xref = new Xref(channel, this.label).read();
+      long position = channel.size();
+      channel.position(position);
+      if (
+        position > 0 && Xref.readBytes(channel, position - 1, 1)[0] != '\n'
+      ) {
+        Compactor.write(output, "\n");
+        position++;
+      }
+      Map<Integer, Long> offsets = new TreeMap<>();
+      for (Map.Entry<Integer, byte[]> entry : this.updates.entrySet()) if (
+        entry.getValue() != null
+      ) {
+        offsets.put(entry.getKey(), position);
+        Compactor.write(output, entry.getValue());
+        position += entry.getValue().length;
+      }
+      Compactor.write(output, makeSection(xref, offsets, position));
+    }
+  }
+
+  /**
+   * Returns the cross-reference section at the given position of the given new
+   * object offsets and its removals, followed by its trailer.
+   */
+  protected String makeSection(
+    Xref xref,
+    Map<Integer, Long> offsets,
+    long position
+  ) {
+    List<Integer> removed = new ArrayList<>();
+    this.updates.forEach((number, bytes) -> {
+        if (bytes == null && xref.isInUse(number)) removed.add(number);
+      }
+    );
+    // Removed objects are chained to the head of the old free list.
+    Map<Integer, String> rows = new TreeMap<>();
+    StringBuilder row = new StringBuilder(Xref.ENTRY);
+    long next = xref.getSize() > 0 && !xref.isInUse(0) ? xref.getOffset(0) : 0;
+    for (int index = removed.size() - 1; index >= 0; index--) {
+      Xref.appendEntry(
+        row,
+        next,
+        Math.min(Xref.MAX_GEN, xref.getGen(removed.get(index)) + 1),
+        Xref.FREE
+      );
+      rows.put(removed.get(index), row.toString());
+      row.setLength(0);
+      next = removed.get(index);
+    }
+    if (!removed.isEmpty()) {
+      Xref.appendEntry(row, next, Xref.MAX_GEN, Xref.FREE);
+      rows.put(0, row.toString());
+      row.setLength(0);
+    }
+    for (Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+      Xref.appendEntry(
+        row,
+        entry.getValue(),
+        xref.isInUse(entry.getKey()) ? xref.getGen(entry.getKey()) : 0,
+        Xref.IN_USE
+      );
+      rows.put(entry.getKey(), row.toString());
+      row.setLength(0);
+    }
+    int size = xref.getSize();
+    StringBuilder out = new StringBuilder().append(Xref.XREF).append('\n');
+    List<Integer> numbers = new ArrayList<>(rows.keySet());
+    int start = 0;
+    for (int index = 1; index <= numbers.size(); index++) if (
+      index == numbers.size() ||
+      numbers.get(index) != numbers.get(index - 1) + 1
+    ) {
+      out
+        .append(numbers.get(start))
+        .append(' ')
+        .append(index - start)
+        .append('\n');
+      for (int number : numbers.subList(start, index)) out.append(
+        rows.get(number)
+      );
+      size = Math.max(size, numbers.get(index - 1) + 1);
+      start = index;
+    }
+    return out
+      .append(Xref.TRAILER_COMMAND)
+      .append("\n<< /Size ")
+      .append(size)
+      .append(" /Prev ")
+      .append(xref.getStartxref())
+      .append(' ')
+      .append(Packer.makeTrailer(xref.getTrailer()))
+      .append(" >>\n")
+      .append(Xref.STARTXREF)
+      .append('\n')
+      .append(position)
+      .append("\n%%EOF\n")
+      .toString();
+  }
+}
@@ -0,0 +1,147 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.ObjectIndex.Entry;
+import eden.mlsanitizer.excep.BadPDFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compacts a PDF by copying only the objects that are reachable from its
+ * trailer, followed by a new cross-reference table. Unreachable objects become
+ * free entries, so object numbers are kept.
+ *
+ * @author Brendon
+ */
+public class Compactor {
+
+  /** Greatest generation number. */
+  protected static final int MAX_GEN = Xref.MAX_GEN;
+  protected static final Pattern REGEX_PREV = Pattern.compile(
+    "\\s*/Prev\\s+\\p{Digit}+"
+  );
+  protected static final Pattern REGEX_SIZE = Pattern.compile(
+    "/Size\\s+\\p{Digit}+"
+  );
+
+  /** Item label for exceptions. */
+  protected final String label;
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected final Throttle throttle;
+
+  /**
+   * Makes an instance with the given label that writes through the given
+   * throttle, if any.
+   */
+  protected Compactor(String label, Throttle throttle) {
+    this.label = label;
+    this.throttle = throttle;
+  }
+
+  /** Compacts the PDF at the given path into the other given path. */
+  protected void compact(Path in, Path out)
+    throws BadPDFException, IOException {
+    ObjectIndex index = new ObjectIndex(this.label).read(in);
+    BitSet used = index.reach();
+    int size = index.getSize();
+    long[] offsets = new long[size];
+    int[] gens = new int[size];
+    try (
+      FileChannel input = FileChannel.open(in, StandardOpenOption.READ);
+      WritableByteChannel output = openOutput(out, this.throttle)
+    ) {
+      long position = transfer(input, 0, index.getHead(), output);
+      for (Entry entry : index.getEntries()) if (used.get(entry.number)) {
+        offsets[entry.number] = position;
+        gens[entry.number] = entry.gen;
+        position += transfer(input, entry.offset, entry.length, output);
+      } else gens[entry.number] = Math.min(MAX_GEN, entry.gen + 1);
+      write(
+        output,
+        Xref.format(offsets, gens, used) +
+        makeTrailer(index.getTrailer(), size, position)
+      );
+    }
+  }
+
+  /**
+   * Returns the given trailer dictionary with the given size and without its
+   * previous section, followed by the given `startxref`.
+   */
+  protected static String makeTrailer(
+    String trailer,
+    int size,
+    long startxref
+  ) {
+    trailer = REGEX_PREV.matcher(trailer).replaceAll("");
+    Matcher matcher = REGEX_SIZE.matcher(trailer);
+    trailer =
+      matcher.find()
+        ? matcher.replaceFirst("/Size " + size)
+        : trailer.replaceFirst("<<", "<< /Size " + size);
+    return (
+      Xref.TRAILER_COMMAND +
+      "\n" +
+      trailer +
+      "\n" +
+      Xref.STARTXREF +
+      "\n" +
+      startxref +
+      "\n%%EOF\n"
+    );
+  }
+
+  /**
+   * Opens the given path for writing through the given throttle, if any,
+   * replacing its contents.
+   */
+  protected static WritableByteChannel openOutput(Path path, Throttle throttle)
+    throws IOException {
+    FileChannel out = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.WRITE
+    );
+    return throttle == null ? out : throttle.wrap(out);
+  }
+
+  /**
+   * Transfers the given number of bytes from the given channel at the given
+   * position to the other given channel, then returns the former.
+   */
+  protected static long transfer(
+    FileChannel in,
+    long position,
+    long count,
+    WritableByteChannel out
+  ) throws IOException {
+    long done = 0, transferred;
+    while (done < count) {
+      transferred = in.transferTo(position + done, count - done, out);
+      if (transferred <= 0) break;
+      done += transferred;
+    }
+    return done;
+  }
+
+  /** Writes the given ISO 8859-1 string to the given channel. */
+  protected static void write(WritableByteChannel out, String string)
+    throws IOException {
+    write(out, string.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  /** Writes the given bytes to the given channel. */
+  protected static void write(WritableByteChannel out, byte[] bytes)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) out.write(buffer);
+  }
+}
@@ -4,15 +4,20 @@ import static eden.common.shared.Constants.NUL_INT;
 import static eden.mlsanitizer.Heuristics.REGEX_ENDOBJ;
 import static eden.mlsanitizer.Heuristics.REGEX_OBJ;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -28,6 +33,8 @@ public class Context {
   protected static final int CAPACITY = 655360;
   /** End-of-line. */
   protected static final char EOL = '\n';
+  /** Time limit check interval mask in bytes. */
+  protected static final long CHECK_MASK = 0xFFFF;
   /** Mark queue. */
   protected final Deque<Long> marks = new ArrayDeque<>();
   /** Line buffer. */
@@ -46,10 +53,22 @@ public class Context {
   protected String line;
   /** Line and size counters, mark, and object mark. */
   protected long lineCount, mark, objMark, size;
+  /** Input position counter. */
+  protected long position;
+  /** Line length and seek limits in bytes, or 0 if unlimited. */
+  protected long lineLimit = 0, seekLimit = 0;
+  /** Time limit in nanoseconds, or 0 if unlimited. */
+  protected long timeLimit = 0;
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected Throttle throttle = null;
+  /** Deadline in {@link System#nanoTime()}. */
+  protected long deadline;
   /** Whether its InputStream has reached the end-of-file. */
   protected boolean eof;
   /** Whether its InputStream is at an end-of-line. */
   protected boolean eol = false;
+  /** Whether its line is cut short by its line length limit. */
+  protected boolean overflow = false;
 
   {
     initialize(true);
@@ -63,6 +82,7 @@ public class Context {
   protected void initialize(boolean clearMarks) {
     this.eof = false;
     this.eol = false;
+    this.overflow = false;
     this.flags.clear();
     clearBuilder();
     getBuffer().clear();
@@ -71,16 +91,65 @@ public class Context {
     setMark(NUL_INT);
     setMode(INIT_MODE);
     setObjMark(NUL_INT);
+    zeroPosition();
     zeroSize();
     if (clearMarks) getMarks().clear();
   }
 
-  /** Initializes itself for reading from the given InputStream. */
+  /**
+   * Initializes itself for reading from the given InputStream. This also starts
+   * its time limit.
+   */
   protected void initialize(InputStream in) throws IOException {
     close();
     this.in = in;
     this.out = null;
     initialize(true);
+    this.deadline = System.nanoTime() + this.timeLimit;
+  }
+
+  /**
+   * Sets its line length limit, seek limit, and time limit. 0 means unlimited.
+   * The time limit covers reading and writing by this context only.
+   *
+   * @param lineLimit Line length limit in bytes.
+   * @param seekLimit Seek limit in bytes.
+   * @param timeLimit Time limit in seconds.
+   */
+  protected void setLimits(long lineLimit, long seekLimit, long timeLimit) {
+    this.lineLimit = lineLimit;
+    this.seekLimit = seekLimit;
+    this.timeLimit = TimeUnit.SECONDS.toNanos(timeLimit);
+  }
+
+  /** Returns its shared I/O throttle, or null if unthrottled. */
+  protected Throttle getThrottle() {
+    return this.throttle;
+  }
+
+  /** Sets its shared I/O throttle, or null if unthrottled. */
+  protected void setThrottle(Throttle throttle) {
+    this.throttle = throttle;
+  }
+
+  /** Opens the given path for reading. */
+  protected InputStream openInput(Path path) throws IOException {
+    return new BufferedInputStream(throttle(Files.newInputStream(path)));
+  }
+
+  /** Opens the given path for writing. */
+  protected OutputStream openOutput(Path path) throws IOException {
+    return new BufferedOutputStream(throttle(Files.newOutputStream(path)));
+  }
+
+  /** Returns the given InputStream throttled by its throttle, if any. */
+  protected InputStream throttle(InputStream in) {
+    return this.throttle == null ? in : this.throttle.wrap(in);
+  }
+
+  /** Returns the given OutputStream throttled by its throttle, if any. */
+  protected OutputStream throttle(OutputStream out) {
+    return this.throttle == null ? out : this.throttle.wrap(out);
   }
 
   /** Returns whether its line matches the given pattern. */
@@ -93,7 +162,10 @@ public class Context {
     return getMarks().pollFirst();
   }
 
-  /** Reads and returns the next line from its InputStream. */
+  /**
+   * Reads and returns the next line from its InputStream. The line is cut short
+   * when it exceeds its line length limit, seek limit, or time limit.
+   */
   protected String readLine() throws IOException {
     if (isEof()) return null;
     int acc;
@@ -107,15 +179,37 @@ public class Context {
       switch (acc) {
         case -1:
           this.eof = true;
+          this.eol = true;
+          return isInWriteMode() ? stringifyBuffer() : stringifyBuilder();
         case EOL:
+          this.position++;
           this.eol = true;
           return isInWriteMode() ? stringifyBuffer() : stringifyBuilder();
       }
+      this.position++;
       if (isInWriteMode()) getBuffer().add(acc); else getBuilder()
         .appendCodePoint(acc);
+      if (isCut()) return isInWriteMode()
+        ? stringifyBuffer()
+        : stringifyBuilder();
     }
   }
 
+  /**
+   * Returns whether its line is to be cut short by its line length limit, seek
+   * limit, or time limit. The last is checked once every {@link #CHECK_MASK}
+   * bytes.
+   */
+  protected boolean isCut() {
+    if (
+      this.lineLimit > 0 &&
+      (isInWriteMode() ? getBuffer().size() : getBuilder().length()) >
+      this.lineLimit
+    ) return this.overflow = true;
+    if (isOverSeek()) return true;
+    return (getPosition() & CHECK_MASK) == 0 && isOverdue();
+  }
+
   /**
    * Sets itself for writing to the given OutputStream. This initializes all but
    * its mark queue. Its InputStream can not be initialized and instead be
@@ -289,6 +383,16 @@ public class Context {
     this.objMark = mark;
   }
 
+  /** Returns its input position counter. */
+  protected long getPosition() {
+    return this.position;
+  }
+
+  /** Zeros its input position counter. */
+  protected void zeroPosition() {
+    this.position = 0;
+  }
+
   /** Returns its size counter. */
   protected long getSize() {
     return this.size;
@@ -329,6 +433,36 @@ public class Context {
     return this.eol;
   }
 
+  /** Returns whether its line is cut short by its line length limit. */
+  protected boolean isOverflown() {
+    return this.overflow;
+  }
+
+  /** Returns whether it has passed its time limit. */
+  protected boolean isOverdue() {
+    return this.timeLimit > 0 && System.nanoTime() - this.deadline > 0;
+  }
+
+  /**
+   * Returns whether it has read past its seek limit without finding the page
+   * tree.
+   */
+  protected boolean isOverSeek() {
+    return isSeekLimited() && getPosition() > this.seekLimit;
+  }
+
+  /**
+   * Returns whether its seek limit applies, which is while reading for the page
+   * tree.
+   */
+  protected boolean isSeekLimited() {
+    return (
+      this.seekLimit > 0 &&
+      !isInWriteMode() &&
+      (getMode() == Mode.PDF || getMode() == Mode.PAGES)
+    );
+  }
+
   /** Returns whether its mark is set. */
   protected boolean isMarkSet() {
     return getMark() != NUL_INT;
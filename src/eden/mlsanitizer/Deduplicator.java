@@ -0,0 +1,267 @@
+package eden.mlsanitizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+
+/**
+ * Recognizes inputs with identical content so that each content is sanitized
+ * once. Inputs are grouped by size, and only those of a size seen before are
+ * hashed, as is the first of that size then, unless it has been modified since
+ * it was claimed. The first input of each content owns its claim and settles
+ * it with its output; later ones wait for that, even from other threads. A
+ * claim goes stale once its input is claimed again with other content, or once
+ * its output is gone. Stale claims are pruned as claims accumulate, and all
+ * settled claims are forgotten past {@link #LIMIT}. Instances are thread-safe.
+ *
+ * @author Brendon
+ */
+public class Deduplicator {
+
+  /** Input buffer capacity. */
+  protected static final int CAPACITY = 65536;
+  /** Content digest algorithm. */
+  protected static final String DIGEST = "SHA-256";
+  /** Greatest number of claims kept. */
+  protected static final int LIMIT = 65536;
+  /** Least number of claims at which they are pruned. */
+  protected static final int PRUNE_MIN = 1024;
+
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected final Throttle throttle;
+  /** Claims by input size. */
+  protected final Map<Long, Group> groups = new ConcurrentHashMap<>();
+  /** Latest claims by owning input. */
+  protected final Map<Path, Claim> owners = new ConcurrentHashMap<>();
+  /** Number of claims at which they are next pruned. */
+  protected volatile int threshold = PRUNE_MIN;
+
+  /** Makes an instance that reads through the given throttle, if any. */
+  protected Deduplicator(Throttle throttle) {
+    this.throttle = throttle;
+  }
+
+  /**
+   * Returns the claim of the content of the given input labeled with the given
+   * item. If the former owns it, then it must be settled.
+   */
+  protected Claim claim(Path input, String item) throws IOException {
+    if (this.owners.size() >= this.threshold) prune();
+    Path path = input.toAbsolutePath().normalize();
+    long size = Files.size(input);
+    Claim out = new Claim(path, item, size, Files.getLastModifiedTime(input));
+    Claim existing;
+    Group group = this.groups.computeIfAbsent(size, key -> new Group());
+    synchronized (group) {
+      if (group.first != null && group.first.stale) group.first = null;
+      if (group.first == null && group.claims.isEmpty()) group.first =
+        out; else {
+        if (group.first != null) {
+          try {
+            // Its content is only known if it is unchanged since its claim.
+            String digest = digest(group.first.input);
+            if (group.first.isUnchanged()) group.claims.put(
+              digest,
+              group.first
+            );
+          } catch (IOException exception) {
+            // Its input is gone, so its content can no longer be matched.
+          }
+          group.first = null;
+        }
+        String digest = digest(input);
+        existing = group.claims.get(digest);
+        if (
+          existing != null && !existing.stale && !existing.isOwnedBy(input)
+        ) return existing;
+        group.claims.put(digest, out);
+      }
+    }
+    existing = this.owners.put(path, out);
+    if (existing != null && existing != out) existing.stale = true;
+    return out;
+  }
+
+  /**
+   * Releases the given settled claim whose output is gone, so that its content
+   * is claimed anew.
+   */
+  protected void release(Claim claim) {
+    claim.stale = true;
+  }
+
+  /**
+   * Drops stale claims and those whose output is gone, then all settled claims
+   * if there are still too many.
+   */
+  protected synchronized void prune() {
+    if (this.owners.size() < this.threshold) return;
+    removeIf(Claim::isGone);
+    if (this.owners.size() > LIMIT) removeIf(Claim::isSettled);
+    this.threshold = Math.max(PRUNE_MIN, this.owners.size() * 2);
+  }
+
+  /** Drops its claims that are stale or match the given predicate. */
+  protected void removeIf(Predicate<Claim> predicate) {
+    Predicate<Claim> dropped = predicate.or(claim -> claim.stale);
+    for (Map.Entry<Long, Group> entry : this.groups.entrySet()) {
+      Group group = entry.getValue();
+      synchronized (group) {
+        if (group.first != null && dropped.test(group.first)) group.first =
+          null;
+        group.claims.values().removeIf(dropped);
+        if (group.first == null && group.claims.isEmpty()) this.groups.remove(
+            entry.getKey(),
+            group
+          );
+      }
+    }
+    this.owners.values().removeIf(dropped);
+  }
+
+  /** Returns the digest of the content of the given input. */
+  protected String digest(Path input) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(DIGEST);
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IOException(exception);
+    }
+    byte[] buffer = new byte[CAPACITY];
+    int count;
+    try (InputStream in = openInput(input)) {
+      while ((count = in.read(buffer)) > -1) digest.update(buffer, 0, count);
+    }
+    return toHex(digest.digest());
+  }
+
+  /** Returns the given bytes as lowercase hexadecimal digits. */
+  protected static String toHex(byte[] bytes) {
+    StringBuilder out = new StringBuilder(bytes.length * 2);
+    for (byte octet : bytes) out.append(String.format("%02x", octet));
+    return out.toString();
+  }
+
+  /** Opens the given path for reading through its throttle, if any. */
+  protected InputStream openInput(Path path) throws IOException {
+    InputStream out = Files.newInputStream(path);
+    return this.throttle == null ? out : this.throttle.wrap(out);
+  }
+
+  /** Encapsulates the claims of inputs of one size. */
+  protected static class Group {
+
+    /** Only claim, whose digest is not known yet, or null if none. */
+    protected Claim first;
+    /** Claims by digest. */
+    protected final Map<String, Claim> claims = new HashMap<>();
+  }
+
+  /** Encapsulates the claim of a content by its first input. */
+  protected static class Claim {
+
+    /** Absolute owning input. */
+    protected final Path input;
+    /** Item label of its input. */
+    protected final String item;
+    /** Size of its input in bytes when claimed. */
+    protected final long size;
+    /** Modification time of its input when claimed. */
+    protected final FileTime modified;
+    /** Countdown to its settlement. */
+    protected final CountDownLatch latch = new CountDownLatch(1);
+    /** Output of its input, or null if none. */
+    protected volatile Path output;
+    /** Whether its input failed. */
+    protected volatile boolean failed;
+    /**
+     * Whether its input has since been claimed with other content, or its
+     * output is gone.
+     */
+    protected volatile boolean stale = false;
+
+    /**
+     * Makes an instance owned by the given input labeled with the given item,
+     * with the given size and modification time of the former.
+     */
+    protected Claim(Path input, String item, long size, FileTime modified) {
+      this.input = input;
+      this.item = item;
+      this.size = size;
+      this.modified = modified;
+    }
+
+    /** Returns whether its input is unchanged since it was claimed. */
+    protected boolean isUnchanged() {
+      try {
+        return (
+          Files.size(this.input) == this.size &&
+          Files.getLastModifiedTime(this.input).equals(this.modified)
+        );
+      } catch (IOException exception) {
+        return false;
+      }
+    }
+
+    /** Returns whether it is settled. */
+    protected boolean isSettled() {
+      return this.latch.getCount() == 0;
+    }
+
+    /** Returns whether it is settled with an output that is gone. */
+    protected boolean isGone() {
+      Path output = this.output;
+      return isSettled() && output != null && !Files.exists(output);
+    }
+
+    /** Returns whether it is owned by the given input. */
+    protected boolean isOwnedBy(Path input) {
+      return this.input.equals(input.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Settles itself with the given output, or null if none, and whether its
+     * input failed.
+     */
+    protected void settle(Path output, boolean failed) {
+      this.output = output;
+      this.failed = failed;
+      this.latch.countDown();
+    }
+
+    /** Waits until it is settled. */
+    protected void await() throws InterruptedIOException {
+      try {
+        this.latch.await();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+
+    /** Returns the item label of its input. */
+    protected String getItem() {
+      return this.item;
+    }
+
+    /** Returns the output of its input, or null if none. */
+    protected Path getOutput() {
+      return this.output;
+    }
+
+    /** Returns whether its input failed. */
+    protected boolean isFailed() {
+      return this.failed;
+    }
+  }
+}
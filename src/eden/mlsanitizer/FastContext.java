@@ -0,0 +1,169 @@
+package eden.mlsanitizer;
+
+import static eden.common.shared.Constants.NUL_INT;
+import static eden.mlsanitizer.Heuristics.REGEX_ENDOBJ;
+import static eden.mlsanitizer.Heuristics.REGEX_OBJ;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Encapsulates a recyclable execution context that reads in blocks into a byte
+ * array line buffer rather than one boxed byte at a time. It behaves exactly
+ * like its superclass, which remains the reference engine.
+ *
+ * @author Brendon
+ */
+public class FastContext extends Context {
+
+  /** Input block capacity. */
+  protected static final int BLOCK = 65536;
+  /** Prefix of lines that may match {@code REGEX_ENDOBJ}. */
+  protected static final byte[] ENDOBJ = "endobj ".getBytes(
+    StandardCharsets.ISO_8859_1
+  );
+  /** Input block. */
+  protected final byte[] block = new byte[BLOCK];
+  /** Recycled matchers by pattern. */
+  protected final Map<Pattern, Matcher> matchers = new IdentityHashMap<>();
+  /** Line buffer. */
+  protected byte[] bytes = new byte[BLOCK];
+  /** Input block cursor and limit, and line buffer length. */
+  protected int index, limit, length;
+
+  @Override
+  protected void initialize(boolean clearMarks) {
+    super.initialize(clearMarks);
+    this.index = 0;
+    this.limit = 0;
+    this.length = 0;
+  }
+
+  @Override
+  protected InputStream openInput(Path path) throws IOException {
+    return throttle(Files.newInputStream(path));
+  }
+
+  @Override
+  protected OutputStream openOutput(Path path) throws IOException {
+    return new BufferedOutputStream(
+      throttle(Files.newOutputStream(path)),
+      BLOCK
+    );
+  }
+
+  @Override
+  protected boolean lineMatches(Pattern pattern) {
+    Matcher matcher = this.matchers.get(pattern);
+    if (matcher == null) this.matchers.put(
+        pattern,
+        matcher = pattern.matcher(getLine())
+      ); else matcher.reset(getLine());
+    return matcher.matches();
+  }
+
+  @Override
+  protected String readLine() throws IOException {
+    if (isEof()) return null;
+    this.length = 0;
+    if (isEol()) {
+      incrementLineCount();
+      this.eol = false;
+    }
+    int end, count;
+    boolean cut;
+    while (true) {
+      if (this.index == this.limit) {
+        if (isOverdue()) return stringify();
+        this.limit = this.in.read(this.block);
+        this.index = 0;
+        if (this.limit < 1) {
+          this.limit = 0;
+          this.eof = true;
+          this.eol = true;
+          return stringify();
+        }
+      }
+      end = this.index;
+      while (end < this.limit && this.block[end] != EOL) end++;
+      count = end - this.index;
+      cut = false;
+      if (this.lineLimit > 0 && this.length + count > this.lineLimit) {
+        count = (int) (this.lineLimit + 1 - this.length);
+        this.overflow = cut = true;
+      }
+      if (isSeekLimited() && this.position + count > this.seekLimit) {
+        count =
+          (int) Math.min(count, Math.max(0, this.seekLimit + 1 - this.position));
+        cut = true;
+      }
+      append(count);
+      if (cut) return stringify();
+      if (end < this.limit) {
+        this.index++;
+        this.position++;
+        this.eol = true;
+        return stringify();
+      }
+    }
+  }
+
+  /**
+   * Appends the given number of bytes from its input block to its line buffer.
+   */
+  protected void append(int count) {
+    if (this.length + count > this.bytes.length) this.bytes =
+      Arrays.copyOf(
+        this.bytes,
+        Math.max(this.length + count, this.bytes.length * 2)
+      );
+    System.arraycopy(this.block, this.index, this.bytes, this.length, count);
+    this.length += count;
+    this.index += count;
+    this.position += count;
+  }
+
+  /**
+   * Stringifies its line buffer into its line accumulator, then returns the
+   * latter. Lines are only matched against object patterns that they can
+   * match.
+   */
+  protected String stringify() {
+    setLine(new String(this.bytes, 0, this.length, StandardCharsets.ISO_8859_1));
+    if (!isInWriteMode()) if (
+      this.length > 0 &&
+      this.bytes[0] >= '0' &&
+      this.bytes[0] <= '9' &&
+      lineMatches(REGEX_OBJ)
+    ) setObjMark(getLineCount()); else if (
+      startsWith(ENDOBJ) && lineMatches(REGEX_ENDOBJ)
+    ) setObjMark(NUL_INT);
+    return getLine();
+  }
+
+  /** Returns whether its line buffer starts with the given bytes. */
+  protected boolean startsWith(byte[] prefix) {
+    if (this.length < prefix.length) return false;
+    for (int index = 0; index < prefix.length; index++) if (
+      this.bytes[index] != prefix[index]
+    ) return false;
+    return true;
+  }
+
+  @Override
+  protected void writeBuffer() throws IOException {
+    this.out.write(this.bytes, 0, this.length);
+    this.out.write(EOL);
+    incrementSize(this.length + 1);
+  }
+}
@@ -0,0 +1,615 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.ObjectIndex.Entry;
+import eden.mlsanitizer.excep.BadPDFException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Linearizes a PDF for Fast Web View. Objects are renumbered and laid out into
+ * the parts of a linearized PDF: the linearization dictionary and first-page
+ * cross-reference section, the catalog, the primary hint stream, the objects
+ * of the first page, those of each remaining page, shared objects, then the
+ * rest. Offsets in the hint stream exclude the hint stream itself, so its
+ * tables are computed before its length is known. Only objects reachable from
+ * its trailer are kept, and their heads are read through a bounded cache as
+ * references are followed. PDFs with object streams, cross-reference streams,
+ * or encryption are not supported.
+ *
+ * @author Brendon
+ */
+public class Linearizer {
+
+  /** Number of bytes searched for a linearization dictionary. */
+  protected static final int HEAD = 1024;
+  /** Width of numbers that are known only after layout. */
+  protected static final int WIDTH = 10;
+  protected static final Pattern REGEX_ENCRYPT = Pattern.compile(
+    "/Encrypt\\b"
+  );
+  protected static final Pattern REGEX_KIDS = Pattern.compile(
+    "/Kids\\s*\\[([^\\]]*)\\]"
+  );
+  protected static final Pattern REGEX_LINEARIZED = Pattern.compile(
+    "/Linearized\\b"
+  );
+  protected static final Pattern REGEX_PAGES = Pattern.compile(
+    "/Pages\\s+(\\p{Digit}+)\\s+\\p{Digit}+\\s+R"
+  );
+  protected static final Pattern REGEX_REF = Pattern.compile(
+    "(\\p{Digit}+)\\s+\\p{Digit}+\\s+R\\b"
+  );
+  protected static final Pattern REGEX_TYPE_PAGES = Pattern.compile(
+    "/Type\\s*/Pages\\b"
+  );
+  protected static final Pattern REGEX_UNSUPPORTED = Pattern.compile(
+    "/Type\\s*/(ObjStm|XRef)\\b"
+  );
+
+  /** Item label for exceptions. */
+  protected final String label;
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected final Throttle throttle;
+  /** New object numbers by object number. */
+  protected final Map<Integer, Integer> numbers = new HashMap<>();
+  /** Page objects, in order. */
+  protected final List<Integer> pages = new ArrayList<>();
+  /** Objects of each page; the first page's are shared objects too. */
+  protected final List<List<Integer>> sections = new ArrayList<>();
+  /** Shared objects of pages other than the first. */
+  protected final List<Integer> shared = new ArrayList<>();
+  /** Objects of no page other than the catalog. */
+  protected final List<Integer> others = new ArrayList<>();
+  /** Shared object identifiers of each page. */
+  protected final List<int[]> identifiers = new ArrayList<>();
+  /** Object index. */
+  protected ObjectIndex index;
+  /** Object head cache. */
+  protected ObjectCache cache;
+  /** Numbers of kept objects. */
+  protected BitSet kept;
+  /** Object number of the catalog. */
+  protected int root;
+
+  /**
+   * Makes an instance with the given label that writes through the given
+   * throttle, if any.
+   */
+  protected Linearizer(String label, Throttle throttle) {
+    this.label = label;
+    this.throttle = throttle;
+  }
+
+  /** Returns whether the PDF at the given path is linearized. */
+  protected static boolean isLinearized(Path path) throws IOException {
+    try (
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+    ) {
+      return REGEX_LINEARIZED.matcher(Xref.read(channel, 0, HEAD)).find();
+    }
+  }
+
+  /**
+   * Linearizes the PDF at the given path into the other given path, then
+   * returns true. If the former is not supported, then this returns false
+   * without writing anything.
+   */
+  protected boolean linearize(Path in, Path out)
+    throws BadPDFException, IOException {
+    this.index = new ObjectIndex(this.label).read(in);
+    Matcher matcher = Xref.REGEX_ROOT.matcher(this.index.getTrailer());
+    if (
+      REGEX_ENCRYPT.matcher(this.index.getTrailer()).find() || !matcher.find()
+    ) return false;
+    this.root = parseNumber(matcher.group(1));
+    this.kept = this.index.reach();
+    try (
+      FileChannel input = FileChannel.open(in, StandardOpenOption.READ)
+    ) {
+      this.cache = new ObjectCache(this.index, input);
+      for (Entry entry : this.index.getEntries()) if (
+        this.kept.get(entry.number) &&
+        REGEX_UNSUPPORTED.matcher(this.cache.get(entry.number)).find()
+      ) return false;
+      if (!plan()) return false;
+      try (
+        WritableByteChannel output = Compactor.openOutput(out, this.throttle)
+      ) {
+        write(input, output);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Assigns kept objects to parts and new object numbers, then returns whether
+   * there are pages.
+   */
+  protected boolean plan() throws IOException {
+    if (this.root < 0 || !this.kept.get(this.root)) return false;
+    Matcher matcher = REGEX_PAGES.matcher(this.cache.get(this.root));
+    if (!matcher.find()) return false;
+    BitSet barrier = new BitSet();
+    collect(parseNumber(matcher.group(1)), barrier);
+    if (this.pages.isEmpty()) return false;
+    barrier.set(this.root);
+    matcher = Xref.REGEX_INFO.matcher(this.index.getTrailer());
+    int info = matcher.find() ? parseNumber(matcher.group(1)) : -1;
+    if (info >= 0) barrier.set(info);
+    List<List<Integer>> reaches = new ArrayList<>(this.pages.size());
+    for (int page : this.pages) reaches.add(reach(page, barrier));
+    List<List<Integer>> rest = reaches.subList(1, reaches.size());
+    int size = this.index.getSize();
+    BitSet placed = new BitSet(size);
+    int[] users = new int[size];
+    for (List<Integer> reach : rest) for (int number : reach) users[number]++;
+    this.sections.add(reaches.get(0));
+    reaches.get(0).forEach(placed::set);
+    List<Integer> section;
+    for (List<Integer> reach : rest) {
+      this.sections.add(section = new ArrayList<>());
+      for (int number : reach) if (
+        !placed.get(number) && users[number] == 1
+      ) {
+        section.add(number);
+        placed.set(number);
+      }
+    }
+    for (List<Integer> reach : rest) for (int number : reach) if (
+      !placed.get(number)
+    ) {
+      this.shared.add(number);
+      placed.set(number);
+    }
+    placed.set(this.root);
+    for (Entry entry : this.index.getEntries()) if (
+      this.kept.get(entry.number) && !placed.get(entry.number)
+    ) this.others.add(entry.number);
+    // Shared object identifiers count the first page's objects first.
+    int[] ids = new int[size];
+    int id = 0;
+    for (int number : reaches.get(0)) ids[number] = ++id;
+    for (int number : this.shared) ids[number] = ++id;
+    this.identifiers.add(new int[0]);
+    for (List<Integer> reach : rest) this.identifiers.add(
+        reach
+          .stream()
+          .filter(number -> ids[number] > 0)
+          .mapToInt(number -> ids[number] - 1)
+          .toArray()
+      );
+    int number = 1;
+    for (List<Integer> objects : this.sections.subList(
+        1,
+        this.sections.size()
+      )) for (int object : objects) {
+      this.numbers.put(object, number++);
+    }
+    for (int object : this.shared) this.numbers.put(object, number++);
+    for (int object : this.others) this.numbers.put(object, number++);
+    // Linearization dictionary, catalog, hint stream, then the first page.
+    number += 3;
+    this.numbers.put(this.root, number - 2);
+    for (int object : this.sections.get(0)) this.numbers.put(object, number++);
+    return true;
+  }
+
+  /**
+   * Collects the page objects and page tree nodes under the given node, if
+   * any, into its pages and the given set, respectively.
+   */
+  protected void collect(int number, BitSet nodes) throws IOException {
+    if (number < 0 || !this.kept.get(number) || nodes.get(number)) return;
+    String head = this.cache.get(number);
+    Matcher matcher = REGEX_KIDS.matcher(head);
+    if (REGEX_TYPE_PAGES.matcher(head).find() && matcher.find()) {
+      nodes.set(number);
+      matcher = REGEX_REF.matcher(matcher.group(1));
+      while (matcher.find()) collect(parseNumber(matcher.group(1)), nodes);
+    } else {
+      this.pages.add(number);
+      nodes.set(number);
+    }
+  }
+
+  /**
+   * Returns the given page object followed by the kept objects reachable from
+   * it without passing through the given barrier.
+   */
+  protected List<Integer> reach(int page, BitSet barrier) {
+    List<Integer> out = new ArrayList<>();
+    BitSet seen = new BitSet();
+    Deque<Integer> queue = new ArrayDeque<>();
+    queue.add(page);
+    seen.set(page);
+    Integer number;
+    while ((number = queue.pollFirst()) != null) {
+      out.add(number);
+      for (int reference : this.index.getEntry(number).references) if (
+        !seen.get(reference) &&
+        !barrier.get(reference) &&
+        this.kept.get(reference)
+      ) {
+        seen.set(reference);
+        queue.add(reference);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Lays out and writes its objects from the given channel to the other. Heads
+   * are renumbered once for layout and again for writing, rather than held.
+   */
+  protected void write(FileChannel in, WritableByteChannel out)
+    throws IOException {
+    List<Integer> order = new ArrayList<>();
+    order.add(this.root);
+    order.addAll(this.sections.get(0));
+    for (int page = 1; page < this.sections.size(); page++) order.addAll(
+      this.sections.get(page)
+    );
+    order.addAll(this.shared);
+    order.addAll(this.others);
+    int main = this.numbers.get(this.root) - 1, size =
+      main + 3 + this.sections.get(0).size();
+    long[] offsets = new long[size], lengths = new long[size];
+    long header = this.index.getHead();
+    String trailer = renumber(Packer.makeTrailer(this.index.getTrailer()));
+    long position =
+      header +
+      makeDictionary(main, 0, 0, 0, 0, 0, 0).length() +
+      makeFirstXref(main, offsets, trailer, 0).length();
+    // Offsets exclude the hint stream, which follows the catalog.
+    Entry entry;
+    int number;
+    for (int object : order) {
+      entry = this.index.getEntry(object);
+      number = this.numbers.get(object);
+      offsets[number] = position;
+      lengths[number] =
+        makeHead(object).length +
+        (entry.stream ? entry.length - this.cache.get(object).length() : 0);
+      position += lengths[number];
+    }
+    int hint = main + 2, catalog = main + 1;
+    long start = offsets[catalog] + lengths[catalog];
+    byte[] stream = makeHintStream(hint, offsets, lengths);
+    for (int object : order) if (object != this.root) {
+      offsets[this.numbers.get(object)] += stream.length;
+    }
+    position += stream.length;
+    offsets[hint] = start;
+    long first = header + makeDictionary(main, 0, 0, 0, 0, 0, 0).length();
+    offsets[main] = header;
+    String xref = makeXref(main, offsets), end =
+      Xref.TRAILER_COMMAND +
+      "\n<< /Size " +
+      main +
+      " >>\n" +
+      Xref.STARTXREF +
+      "\n" +
+      first +
+      "\n%%EOF\n";
+    List<Integer> section = this.sections.get(0);
+    int last = this.numbers.get(section.get(section.size() - 1));
+    Compactor.transfer(in, 0, header, out);
+    Compactor.write(
+      out,
+      makeDictionary(
+        main,
+        position + xref.length() + end.length(),
+        start,
+        stream.length,
+        offsets[last] + lengths[last],
+        position + xref.indexOf('\n', Xref.XREF.length() + 1),
+        this.pages.size()
+      ) +
+      makeFirstXref(main, offsets, trailer, position)
+    );
+    for (int object : order) {
+      write(out, this.index.getEntry(object), in);
+      if (object == this.root) Compactor.write(out, stream);
+    }
+    Compactor.write(out, xref + end);
+  }
+
+  /**
+   * Writes the renumbered head of the given object, followed by the rest of its
+   * stream from the given channel, if any.
+   */
+  protected void write(WritableByteChannel out, Entry entry, FileChannel in)
+    throws IOException {
+    Compactor.write(out, makeHead(entry.number));
+    if (!entry.stream) return;
+    long skip = this.cache.get(entry.number).length();
+    Compactor.transfer(in, entry.offset + skip, entry.length - skip, out);
+  }
+
+  /** Returns the renumbered head of the given object. */
+  protected byte[] makeHead(int object) throws IOException {
+    return renumber(
+      Xref.REGEX_HEADER
+        .matcher(this.cache.get(object))
+        .replaceFirst(this.numbers.get(object) + " 0 obj")
+    ).getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the hint stream object with the given number for the given offsets
+   * and lengths by new object number.
+   */
+  protected byte[] makeHintStream(int number, long[] offsets, long[] lengths) {
+    int count = this.pages.size();
+    long[] objects = new long[count], sizes = new long[count];
+    List<Integer> section;
+    int first, last;
+    for (int page = 0; page < count; page++) {
+      section = this.sections.get(page);
+      objects[page] = section.size();
+      first = this.numbers.get(this.pages.get(page));
+      last = this.numbers.get(section.get(section.size() - 1));
+      sizes[page] = offsets[last] + lengths[last] - offsets[first];
+    }
+    int total = this.sections.get(0).size() + this.shared.size();
+    long minObjects = min(objects), minSize = min(sizes), maxShared = 0;
+    for (int[] ids : this.identifiers) maxShared = Math.max(maxShared, ids.length);
+    int objectBits = getBits(max(objects) - minObjects), sizeBits = getBits(
+      max(sizes) - minSize
+    ), sharedBits = getBits(maxShared), idBits = getBits(total - 1);
+    // Page offset hint table.
+    Bits bits = new Bits();
+    bits.write(minObjects, 32);
+    bits.write(offsets[this.numbers.get(this.pages.get(0))], 32);
+    bits.write(objectBits, 16);
+    bits.write(minSize, 32);
+    bits.write(sizeBits, 16);
+    bits.write(0, 32);
+    bits.write(0, 16);
+    bits.write(minSize, 32);
+    bits.write(sizeBits, 16);
+    bits.write(sharedBits, 16);
+    bits.write(idBits, 16);
+    bits.write(0, 16);
+    bits.write(1, 16);
+    for (long value : objects) bits.write(value - minObjects, objectBits);
+    bits.flush();
+    for (long value : sizes) bits.write(value - minSize, sizeBits);
+    bits.flush();
+    for (int[] ids : this.identifiers) bits.write(ids.length, sharedBits);
+    bits.flush();
+    for (int[] ids : this.identifiers) for (int id : ids) bits.write(id, idBits);
+    bits.flush();
+    for (long value : sizes) bits.write(value - minSize, sizeBits);
+    bits.flush();
+    // Shared object hint table, one object per group.
+    int shared = bits.size();
+    long[] groups = new long[total];
+    int index = 0;
+    for (int object : this.sections.get(0)) groups[index++] =
+      lengths[this.numbers.get(object)];
+    for (int object : this.shared) groups[index++] =
+      lengths[this.numbers.get(object)];
+    long minGroup = min(groups);
+    int groupBits = getBits(max(groups) - minGroup);
+    int firstShared = this.shared.isEmpty()
+      ? 0
+      : this.numbers.get(this.shared.get(0));
+    bits.write(firstShared, 32);
+    bits.write(firstShared == 0 ? 0 : offsets[firstShared], 32);
+    bits.write(this.sections.get(0).size(), 32);
+    bits.write(total, 32);
+    bits.write(0, 16);
+    bits.write(minGroup, 32);
+    bits.write(groupBits, 16);
+    for (long value : groups) bits.write(value - minGroup, groupBits);
+    bits.flush();
+    for (int group = 0; group < total; group++) bits.write(0, 1);
+    bits.flush();
+    byte[] data = bits.toByteArray(), head =
+      (
+        number +
+        " 0 obj\n<< /S " +
+        shared +
+        " /Length " +
+        data.length +
+        " >>\n" +
+        Xref.STREAM +
+        "\n"
+      ).getBytes(StandardCharsets.ISO_8859_1), tail =
+      "\nendstream\nendobj\n".getBytes(StandardCharsets.ISO_8859_1);
+    return ByteBuffer
+      .allocate(head.length + data.length + tail.length)
+      .put(head)
+      .put(data)
+      .put(tail)
+      .array();
+  }
+
+  /**
+   * Returns the linearization dictionary object with the given number and
+   * values, whose numbers are padded to a fixed width.
+   */
+  protected static String makeDictionary(
+    int number,
+    long length,
+    long hint,
+    long hintLength,
+    long end,
+    long xref,
+    int pages
+  ) {
+    return (
+      number +
+      " 0 obj\n<< /Linearized 1 /L " +
+      pad(length) +
+      " /H [ " +
+      pad(hint) +
+      " " +
+      pad(hintLength) +
+      " ] /O " +
+      (number + 3) +
+      " /E " +
+      pad(end) +
+      " /N " +
+      pad(pages) +
+      " /T " +
+      pad(xref) +
+      " >>\nendobj\n"
+    );
+  }
+
+  /**
+   * Returns the first-page cross-reference section and trailer for objects
+   * from the given number, whose previous section is at the given offset.
+   */
+  protected static String makeFirstXref(
+    int number,
+    long[] offsets,
+    String trailer,
+    long prev
+  ) {
+    StringBuilder out = new StringBuilder(
+      (offsets.length - number + 2) * Xref.ENTRY + trailer.length()
+    );
+    out
+      .append(Xref.XREF)
+      .append('\n')
+      .append(number)
+      .append(' ')
+      .append(offsets.length - number)
+      .append('\n');
+    for (int index = number; index < offsets.length; index++) Xref.appendEntry(
+      out,
+      offsets[index],
+      0,
+      Xref.IN_USE
+    );
+    return out
+      .append(Xref.TRAILER_COMMAND)
+      .append("\n<< /Size ")
+      .append(offsets.length)
+      .append(" /Prev ")
+      .append(pad(prev))
+      .append(' ')
+      .append(trailer)
+      .append(" >>\n")
+      .append(Xref.STARTXREF)
+      .append("\n0\n%%EOF\n")
+      .toString();
+  }
+
+  /** Returns the main cross-reference section for objects below the given. */
+  protected static String makeXref(int number, long[] offsets) {
+    long[] main = new long[number];
+    System.arraycopy(offsets, 0, main, 0, number);
+    BitSet used = new BitSet(number);
+    used.set(1, number);
+    return Xref.format(main, new int[number], used);
+  }
+
+  /**
+   * Returns the given text with its object references renumbered. References
+   * to objects that are not kept become null.
+   */
+  protected String renumber(String text) {
+    Matcher matcher = REGEX_REF.matcher(text);
+    StringBuffer out = new StringBuffer(text.length());
+    Integer number;
+    while (matcher.find()) {
+      number = this.numbers.get(parseNumber(matcher.group(1)));
+      matcher.appendReplacement(out, number == null ? "null" : number + " 0 R");
+    }
+    return matcher.appendTail(out).toString();
+  }
+
+  /**
+   * Parses the given object number, or returns -1 if it is out of range, as no
+   * such object can exist.
+   */
+  protected static int parseNumber(String digits) {
+    long out = Xref.parseDigits(digits);
+    return out < Integer.MAX_VALUE ? (int) out : -1;
+  }
+
+  /** Returns the given number padded with leading spaces to a fixed width. */
+  protected static String pad(long number) {
+    StringBuilder out = new StringBuilder(WIDTH).append(number);
+    while (out.length() < WIDTH) out.insert(0, ' ');
+    return out.toString();
+  }
+
+  /** Returns the number of bits to hold the given non-negative value. */
+  protected static int getBits(long value) {
+    return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  /** Returns the least of the given values, or 0 if there are none. */
+  protected static long min(long[] values) {
+    long out = values.length == 0 ? 0 : Long.MAX_VALUE;
+    for (long value : values) out = Math.min(out, value);
+    return out;
+  }
+
+  /** Returns the greatest of the given values, or 0 if there are none. */
+  protected static long max(long[] values) {
+    long out = 0;
+    for (long value : values) out = Math.max(out, value);
+    return out;
+  }
+
+  /** Returns its object head cache, or null if it has not read any. */
+  protected ObjectCache getCache() {
+    return this.cache;
+  }
+
+  /** Encapsulates a big-endian bit writer. */
+  protected static class Bits {
+
+    /** Written bytes. */
+    protected final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    /** Pending bits and their count. */
+    protected int acc, count;
+
+    /** Writes the given number of low bits of the given value. */
+    protected void write(long value, int bits) {
+      for (int bit = bits - 1; bit >= 0; bit--) {
+        this.acc = this.acc << 1 | (int) (value >>> bit & 1);
+        if (++this.count == 8) flush();
+      }
+    }
+
+    /** Pads pending bits with zeros to a byte boundary. */
+    protected void flush() {
+      if (this.count == 0) return;
+      this.out.write(this.acc << (8 - this.count));
+      this.acc = 0;
+      this.count = 0;
+    }
+
+    /** Returns the number of written bytes. */
+    protected int size() {
+      return this.out.size();
+    }
+
+    /** Returns the written bytes. */
+    protected byte[] toByteArray() {
+      return this.out.toByteArray();
+    }
+  }
+}
@@ -3,49 +3,35 @@ package eden.mlsanitizer;
 import static eden.common.shared.Constants.EOL;
 import static eden.common.shared.Constants.EXIT_FAILURE;
 import static eden.common.shared.Constants.EXIT_SUCCESS;
-import static eden.common.shared.Constants.SPACE;
 import static eden.common.shared.Constants.STDOUT;
-import static eden.mlsanitizer.Heuristics.DIST_HOOK_URI;
-import static eden.mlsanitizer.Heuristics.REGEX_ANNOTS;
-import static eden.mlsanitizer.Heuristics.REGEX_AUTHOR;
-import static eden.mlsanitizer.Heuristics.REGEX_CATALOG;
-import static eden.mlsanitizer.Heuristics.REGEX_CONTENTS;
-import static eden.mlsanitizer.Heuristics.REGEX_CREATION;
-import static eden.mlsanitizer.Heuristics.REGEX_CREATOR;
-import static eden.mlsanitizer.Heuristics.REGEX_ENDOBJ;
-import static eden.mlsanitizer.Heuristics.REGEX_HOOK;
-import static eden.mlsanitizer.Heuristics.REGEX_KEYWORDS;
-import static eden.mlsanitizer.Heuristics.REGEX_MODDATE;
-import static eden.mlsanitizer.Heuristics.REGEX_PAGES;
-import static eden.mlsanitizer.Heuristics.REGEX_PDF;
-import static eden.mlsanitizer.Heuristics.REGEX_PRODUCER;
-import static eden.mlsanitizer.Heuristics.REGEX_STARTXREF;
-import static eden.mlsanitizer.Heuristics.REGEX_SUBJECT;
-import static eden.mlsanitizer.Heuristics.REGEX_TITLE;
-import static eden.mlsanitizer.Heuristics.REGEX_URI;
 
 import eden.common.excep.EDENException;
 import eden.common.excep.EDENExceptions;
 import eden.common.excep.EDENRuntimeException;
 import eden.common.io.Modal;
 import eden.common.util.Strings;
-import eden.mlsanitizer.Context.Flag;
-import eden.mlsanitizer.Context.Mode;
+import eden.mlsanitizer.Deduplicator.Claim;
+import eden.mlsanitizer.Options.Engine;
+import eden.mlsanitizer.excep.BadOptionException;
 import eden.mlsanitizer.excep.BadPDFException;
-import eden.mlsanitizer.excep.NonPDFException;
-import eden.mlsanitizer.excep.PDFObjectOpenException;
+import eden.mlsanitizer.excep.EngineMismatchException;
 import eden.mlsanitizer.model.application.Help;
 import eden.mlsanitizer.model.application.Information;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.regex.Pattern;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class serves as the entry point to this application. It consists of the
@@ -57,10 +43,14 @@ public class MLSanitizer {
 
   /** Output filename suffix. */
   public static final String SUFFIX = "-mlsanitized";
+  /** Temporary output filename suffix. */
+  private static final String TEMP_SUFFIX = ".tmp";
+  /** Reference output filename suffix for differential checking. */
+  private static final String CHECK_SUFFIX = ".check";
+  /** Output digest algorithm for differential checking. */
+  private static final String DIGEST = "SHA-256";
   /** Whether to print stack traces of caught exceptions. */
   public static final boolean DEBUG = false;
-  /** xref command. */
-  private static final String XREF = "xref";
 
   /**
    * The main method is the entry point to this application.
@@ -75,12 +65,26 @@ public class MLSanitizer {
   private final Modal modal = new Modal(Information.NAME);
   /** Program arguments. */
   private final String[] arguments;
-  /** Recyclable execution context. */
-  private final Context context = new Context();
-  /** Current working item. */
-  private String item;
+  /** Program options. */
+  private final Options options = new Options();
+  /** Sanitizers with the selected engine, recycled per thread. */
+  private final ThreadLocal<Sanitizer> sanitizers = ThreadLocal.withInitial(
+    () -> new Sanitizer(makeContext(this.options.getEngine()))
+  );
+  /** Sanitizers with the other engine, recycled per thread. */
+  private final ThreadLocal<Sanitizer> checkers = ThreadLocal.withInitial(
+    () -> new Sanitizer(makeContext(getOtherEngine()))
+  );
+  /** Recyclable object stream packer. */
+  private Packer packer;
+  /** Shared I/O throttle, or null if unthrottled. */
+  private Throttle throttle;
+  /** Recognizer of inputs with identical content. */
+  private Deduplicator deduplicator;
+  /** Absolute inputs by output in its output directory. */
+  private final Map<Path, Path> inputs = new ConcurrentHashMap<>();
   /** Whether an error has occurred. */
-  private boolean error = false;
+  private volatile boolean error = false;
 
   /** Makes an instance with the given arguments. */
   private MLSanitizer(String[] args) {
@@ -90,254 +94,445 @@ public class MLSanitizer {
   /** Runs itself. */
   private int run() {
     if (this.arguments.length == 0) return help();
-    File file;
-    InputStream in;
-    int index;
-    for (String argument : this.arguments) {
-      this.item = argument;
-      file = new File(argument);
-      try {
-        in = new BufferedInputStream(Files.newInputStream(file.toPath()));
-        getContext().initialize(in);
-        read();
-        if (getContext().isClean()) continue;
-        in = new BufferedInputStream(Files.newInputStream(file.toPath()));
-        index = argument.lastIndexOf(".");
-        getContext()
-          .setForWriting(
-            in,
-            new BufferedOutputStream(
-              Files.newOutputStream(
-                Paths.get(
-                  argument.substring(0, index) +
-                  SUFFIX +
-                  argument.substring(index)
-                )
-              )
-            )
-          );
-        write();
-        getContext().close();
-      } catch (AccessDeniedException exception) {
-        this.modal.println(argument + ": Access denied.", Modal.ERROR);
-      } catch (NoSuchFileException exception) {
-        this.modal.println(argument + ": Not found.", Modal.ERROR);
-      } catch (BadPDFException | IOException exception) {
-        printException(argument, exception);
-        this.error = true;
-      }
+    List<String> operands;
+    try {
+      operands = this.options.parse(this.arguments);
+    } catch (BadOptionException exception) {
+      printException(exception);
+      return EXIT_FAILURE;
     }
+    if (operands.isEmpty() && this.options.getWatch() == null) return help();
+    if (
+      this.options.getRateLimit() > 0 || this.options.isBackground()
+    ) this.throttle =
+      new Throttle(this.options.getRateLimit(), this.options.isBackground());
+    this.deduplicator = new Deduplicator(this.throttle);
+    for (String argument : operands) sanitize(Paths.get(argument), argument);
+    if (this.options.getWatch() != null) watch(this.options.getWatch());
+    if (this.packer != null) this.packer.close();
     return this.error ? EXIT_FAILURE : EXIT_SUCCESS;
   }
 
-  /** Prints its help message. */
-  private int help() {
-    STDOUT.println(
-      Information.getHeader() + EOL + Help.USAGE + EOL + Help.EXPLANATION
-    );
-    return EXIT_SUCCESS;
-  }
-
-  /** Prints the stack trace of the given exception. */
-  private void printException(Exception exception) {
-    printException(null, exception);
+  /**
+   * Sanitizes the given input labeled with the given item with the sanitizers
+   * of the current thread. If an earlier input has the same content, then its
+   * output is reused instead.
+   */
+  private void sanitize(Path input, String item) {
+    Claim claim = null;
+    Path output = null;
+    boolean failed = true;
+    try {
+      if (!reserve(input, item)) return;
+      claim = this.deduplicator.claim(input, item);
+      while (!claim.isOwnedBy(input)) {
+        if (duplicate(claim, input, item)) return;
+        claim = this.deduplicator.claim(input, item);
+      }
+      if (this.options.isDiffChecking()) output = check(input, item); else if (
+        getSanitizer().read(input, item)
+      ) {
+        output = makeOutput(input);
+        write(getSanitizer(), input, output);
+      }
+      if (output != null) {
+        if (!this.options.isIncremental()) {
+          boolean linearized =
+            !this.options.isCompressing() && Linearizer.isLinearized(input);
+          if (
+            linearized ||
+            this.options.isCompacting() ||
+            this.options.isCompressing()
+          ) rewrite(output, item, linearized);
+        } else if (Linearizer.isLinearized(input)) this.modal.println(
+            item + ": Linearization is not preserved.",
+            Modal.INFO
+          );
+        if (this.options.isVerifying() && !verify(output, item)) {
+          // Invalid outputs are neither served nor linked to by duplicates.
+          discard(output);
+          output = null;
+          return;
+        }
+      }
+      failed = false;
+    } catch (AccessDeniedException exception) {
+      this.modal.println(item + ": Access denied.", Modal.ERROR);
+    } catch (NoSuchFileException exception) {
+      this.modal.println(item + ": Not found.", Modal.ERROR);
+    } catch (
+      BadPDFException | EngineMismatchException | IOException exception
+    ) {
+      printException(item, exception);
+      discard(output);
+      output = null;
+      this.error = true;
+    } finally {
+      if (claim != null && claim.isOwnedBy(input)) claim.settle(output, failed);
+    }
   }
 
   /**
-   * Prints the stack trace of the given exception headered by the given header.
+   * Makes the output of the given input labeled with the given item from that
+   * of the owner of the given claim, if any, once it is settled, then returns
+   * true. It is linked to where possible, or else copied. If the output of the
+   * owner is gone, then this releases the claim and returns false instead.
    */
-  private void printException(String header, Exception exception) {
-    if (exception == null) {
-      return;
+  private boolean duplicate(Claim claim, Path input, String item)
+    throws IOException {
+    claim.await();
+    if (claim.isGone()) {
+      this.deduplicator.release(claim);
+      return false;
     }
-    if (!Strings.isNullOrEmpty(header)) this.modal.print(
-        header + ":" + EOL + "  ",
-        Modal.ERROR
+    if (claim.isFailed()) {
+      this.modal.println(
+          item + ": Duplicate of " + claim.getItem() + ", which failed.",
+          Modal.ERROR
+        );
+      this.error = true;
+    } else this.modal.println(
+        item + ": Duplicate of " + claim.getItem() + ".",
+        Modal.INFO
       );
-    if (exception instanceof EDENRuntimeException) {
-      this.modal.println(exception.getMessage(), Modal.ERROR);
-      this.modal.println(((EDENRuntimeException) exception).getRemedy());
-    } else if (exception instanceof EDENException) {
-      this.modal.println(exception.getMessage(), Modal.ERROR);
-      this.modal.println(((EDENException) exception).getRemedy());
-    } else this.modal.println(exception.toString(), Modal.ERROR);
-    if (DEBUG) exception.printStackTrace(this.modal.getPrintStream());
+    Path output = makeOutput(input);
+    if (
+      claim.getOutput() == null ||
+      Files.exists(output) && Files.isSameFile(output, claim.getOutput())
+    ) return true;
+    Path temp = output.resolveSibling(output.getFileName() + TEMP_SUFFIX);
+    try {
+      Files.deleteIfExists(temp);
+      try {
+        Files.createLink(temp, claim.getOutput());
+      } catch (IOException | UnsupportedOperationException exception) {
+        if (this.throttle == null) Files.copy(
+          claim.getOutput(),
+          temp
+        ); else this.throttle.copy(claim.getOutput(), temp);
+      }
+      Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return true;
   }
 
-  private void read() throws BadPDFException, IOException {
-    main:while (getContext().readLine() != null) switch (
-      getContext().getMode()
+  /**
+   * Sanitizes PDFs arriving in the given directory with its worker threads
+   * until interrupted.
+   */
+  private void watch(Path directory) {
+    try (
+      Watcher watcher = new Watcher(
+        directory,
+        this.options.getJobs(),
+        input -> sanitize(input, input.toString())
+      )
     ) {
-      case PDF:
-        readPdf();
-        break;
-      case PAGES:
-        readPages();
-        break;
-      case PAGE:
-        readPage();
-        break;
-      case HOOK:
-        readHook();
-        break;
-      case URI:
-        readUri();
-        break;
-      case CATALOG:
-        readCatalog();
-        break;
-      case SEEK:
-        seek(REGEX_ENDOBJ, Mode.INFO);
-        break;
-      case INFO:
-        readInfo();
-        break;
-      case DONE:
-        break main;
+      this.modal.println(directory + ": Watching.", Modal.INFO);
+      watcher.watch();
+    } catch (IOException exception) {
+      printException(directory.toString(), exception);
+      this.error = true;
     }
-    if (getContext().hasOpenObjs()) throw new PDFObjectOpenException(
-      EDENExceptions.makeSubject(
-        this.item,
-        Long.toString(getContext().getObjMark())
-      )
+  }
+
+  /** Returns a new execution context for the given engine. */
+  private Context makeContext(Engine engine) {
+    Context out = engine == Engine.FAST ? new FastContext() : new Context();
+    out.setLimits(
+      this.options.getLineLimit(),
+      this.options.getSeekLimit(),
+      this.options.getTimeLimit()
     );
+    out.setThrottle(this.throttle);
+    return out;
   }
 
-  private void readCatalog() {
-    if (getContext().lineMatches(REGEX_CATALOG)) {
-      getContext().addMarkToObjMark();
-      getContext().setMode(Mode.SEEK);
-    }
+  /**
+   * Reserves the output of the given input labeled with the given item in its
+   * output directory, if any, then returns whether no other input has. Inputs
+   * of the same file name from different directories would otherwise overwrite
+   * each other's outputs.
+   */
+  private boolean reserve(Path input, String item) {
+    if (this.options.getOutput() == null) return true;
+    Path path = input.toAbsolutePath().normalize();
+    Path other = this.inputs.putIfAbsent(
+      makeOutput(input).toAbsolutePath().normalize(),
+      path
+    );
+    if (other == null || other.equals(path)) return true;
+    this.modal.println(
+        item + ": Output collides with that of " + other + ".",
+        Modal.ERROR
+      );
+    this.error = true;
+    return false;
   }
 
-  private void readHook() {
-    if (getContext().lineMatches(REGEX_HOOK)) {
-      getContext().setMark(getContext().getLineCount());
-      getContext().setMode(Mode.URI);
+  /**
+   * Returns the output path of the given input, in its output directory if
+   * any. Its suffix goes before the extension, if any.
+   */
+  private Path makeOutput(Path input) {
+    String name = input.getFileName().toString();
+    int index = name.lastIndexOf(".");
+    name =
+      index < 0
+        ? name + SUFFIX
+        : name.substring(0, index) + SUFFIX + name.substring(index);
+    return this.options.getOutput() != null
+      ? this.options.getOutput().resolve(name)
+      : input.resolveSibling(name);
+  }
+
+  /**
+   * Sanitizes the given input with both engines, then returns the output of
+   * the selected engine, or null if the input is clean. Their mark queues and
+   * outputs must be identical, and their speed ratio is reported. Both outputs
+   * are deleted if either fails.
+   */
+  private Path check(Path input, String item)
+    throws BadPDFException, EngineMismatchException, IOException {
+    Sanitizer[] sanitizers = { getSanitizer(), getChecker() };
+    List<List<Long>> marks = new ArrayList<>(2);
+    boolean[] dirty = new boolean[2];
+    long[] times = new long[2];
+    for (int index = 0; index < 2; index++) {
+      times[index] = System.nanoTime();
+      dirty[index] = sanitizers[index].read(input, item);
+      times[index] = System.nanoTime() - times[index];
+      marks.add(sanitizers[index].getMarks());
     }
+    if (dirty[0] != dirty[1] || !marks.get(0).equals(marks.get(1))) {
+      int index = 0;
+      while (
+        index < marks.get(0).size() &&
+        index < marks.get(1).size() &&
+        marks.get(0).get(index).equals(marks.get(1).get(index))
+      ) index++;
+      throw new EngineMismatchException(
+        EDENExceptions.makeSubject(
+          item,
+          "mark " + index,
+          "line " +
+          (index < marks.get(0).size() ? marks.get(0).get(index) : "EOF") +
+          " vs. " +
+          (index < marks.get(1).size() ? marks.get(1).get(index) : "EOF")
+        )
+      );
+    }
+    if (!dirty[0]) return null;
+    Path output = makeOutput(input);
+    Path reference = output.resolveSibling(output.getFileName() + CHECK_SUFFIX);
+    boolean agreed = false;
+    try {
+      for (int index = 0; index < 2; index++) {
+        long time = System.nanoTime();
+        write(sanitizers[index], input, index == 0 ? output : reference);
+        times[index] += System.nanoTime() - time;
+      }
+      String digest = compare(output, reference, item);
+      // Index 0 is the selected engine.
+      boolean fast = this.options.getEngine() == Engine.FAST;
+      this.modal.println(
+        String.format(
+          "%s: Engines agree on %s %s; fast is %.2fx the speed of legacy.",
+          item,
+          DIGEST,
+          digest,
+          (double) times[fast ? 1 : 0] / Math.max(1, times[fast ? 0 : 1])
+        ),
+        Modal.INFO
+      );
+      agreed = true;
+    } finally {
+      Files.deleteIfExists(reference);
+      if (!agreed) Files.deleteIfExists(output);
+    }
+    return output;
   }
 
-  private void readInfo() {
-    if (
-      readInfo(Flag.AUTHOR, REGEX_AUTHOR) &&
-      readInfo(Flag.CREATION, REGEX_CREATION) &&
-      readInfo(Flag.CREATOR, REGEX_CREATOR) &&
-      readInfo(Flag.KEYWORDS, REGEX_KEYWORDS) &&
-      readInfo(Flag.MODDATE, REGEX_MODDATE) &&
-      readInfo(Flag.PRODUCER, REGEX_PRODUCER) &&
-      readInfo(Flag.SUBJECT, REGEX_SUBJECT) &&
-      readInfo(Flag.TITLE, REGEX_TITLE) &&
-      getContext().lineMatches(REGEX_ENDOBJ)
-    ) getContext().setMode(Mode.DONE);
+  /**
+   * Writes the sanitized form of the given input read by the given sanitizer
+   * to the given output, either whole or as an incremental update. The output
+   * is replaced rather than overwritten, as it may be linked to by another.
+   */
+  private void write(Sanitizer sanitizer, Path input, Path output)
+    throws BadPDFException, IOException {
+    Files.deleteIfExists(output);
+    if (this.options.isIncremental()) sanitizer.append(
+      input,
+      output
+    ); else sanitizer.write(input, output);
   }
 
-  private boolean readInfo(Flag flag, Pattern pattern) {
-    if (!getContext().hasFlag(flag) && getContext().lineMatches(pattern)) {
-      getContext().addLine();
-      getContext().raiseFlag(flag);
-      return false;
+  /**
+   * Compares the given outputs byte by byte, then returns their common digest.
+   * This throws at their first divergent line and offset.
+   */
+  private String compare(Path output, Path reference, String item)
+    throws EngineMismatchException, IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(DIGEST);
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IOException(exception);
+    }
+    try (
+      InputStream left = new BufferedInputStream(Files.newInputStream(output));
+      InputStream right = new BufferedInputStream(
+        Files.newInputStream(reference)
+      )
+    ) {
+      long line = 1, offset = 0;
+      int acc;
+      while ((acc = left.read()) == right.read()) {
+        if (acc == -1) return Deduplicator.toHex(digest.digest());
+        digest.update((byte) acc);
+        if (acc == '\n') line++;
+        offset++;
+      }
+      throw new EngineMismatchException(
+        EDENExceptions.makeSubject(
+          item,
+          "line " + line,
+          "offset " + offset
+        )
+      );
     }
-    return true;
   }
 
-  private void readPage() {
-    if (getContext().lineMatches(REGEX_ANNOTS)) getContext()
-      .addLine(); else readHook();
+  /**
+   * Closes the sanitizers of the current thread, then deletes the given
+   * incomplete output if it is not null.
+   */
+  private void discard(Path output) {
+    try {
+      getSanitizer().close();
+      if (this.options.isDiffChecking()) getChecker().close();
+      if (output != null) Files.deleteIfExists(output);
+    } catch (IOException exception) {
+      printException(exception);
+    }
   }
 
-  private void readPages() {
-    seek(REGEX_PAGES, Mode.PAGE);
+  /**
+   * Linearizes, compacts, or packs the given output into a temporary file
+   * beside it, then replaces the former with the latter. Linearization also
+   * compacts. If it is not supported, or if an encrypted output is to be
+   * packed, then the output is only compacted if asked to be.
+   */
+  private void rewrite(Path output, String item, boolean linearize)
+    throws BadPDFException, IOException {
+    Path temp = output.resolveSibling(output.getFileName() + TEMP_SUFFIX);
+    Linearizer linearizer = new Linearizer(item, this.throttle);
+    boolean linearized = false;
+    try {
+      if (this.options.isCompressing()) {
+        if (
+          !getPacker().pack(output, temp, item, this.options.isCompacting())
+        ) {
+          this.modal.println(
+              item + ": Encrypted, so objects are not packed.",
+              Modal.INFO
+            );
+          if (!this.options.isCompacting()) return;
+          new Compactor(item, this.throttle).compact(output, temp);
+        }
+      } else if (
+        linearize && linearizer.linearize(output, temp)
+      ) linearized = true; else {
+        if (linearize) this.modal.println(
+            item + ": Linearization is not preserved.",
+            Modal.INFO
+          );
+        if (!this.options.isCompacting()) return;
+        new Compactor(item, this.throttle).compact(output, temp);
+      }
+      Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    if (linearized) this.modal.println(
+        item + ": Object cache: " + linearizer.getCache() + ".",
+        Modal.INFO
+      );
   }
 
-  private void readPdf() throws NonPDFException {
-    if (getContext().getLineCount() > 1) throw new NonPDFException(this.item);
-    seek(REGEX_PDF, Mode.PAGES);
+  /**
+   * Verifies the given output of the given item, then returns whether it is
+   * valid. If not, then this reports it as an error.
+   */
+  private boolean verify(Path output, String item) {
+    try {
+      new Verifier(output.toString()).verify(output);
+      return true;
+    } catch (BadPDFException | IOException exception) {
+      printException(item, exception);
+      this.error = true;
+      return false;
+    }
   }
 
-  private void readUri() {
-    if (getContext().lineMatches(REGEX_URI)) getContext()
-      .setMode(
-        getContext().getDistanceFromMark() == DIST_HOOK_URI
-          ? Mode.CATALOG
-          : Mode.HOOK
-      );
+  /** Prints its help message. */
+  private int help() {
+    STDOUT.println(
+      Information.getHeader() + EOL + Help.USAGE + EOL + Help.EXPLANATION
+    );
+    return EXIT_SUCCESS;
   }
 
-  private void seek(Pattern pattern, Mode mode) {
-    if (getContext().lineMatches(pattern)) getContext().setMode(mode);
+  /** Prints the stack trace of the given exception. */
+  private void printException(Exception exception) {
+    printException(null, exception);
   }
 
-  private void write() throws IOException {
-    Long mark = getContext().nextMark();
-    boolean penDown = true;
-    while (true) {
-      getContext().readLine();
-      if (getContext().isEof()) break;
-      if (mark != null && getContext().getLineCount() == mark) {
-        penDown = !penDown;
-        mark = getContext().nextMark();
-      }
-      if (penDown) switch (getContext().getMode()) {
-        case PDF:
-          getContext().setMode(Mode.PAGES);
-        case PAGES:
-          writePages();
-          break;
-        case PAGE:
-          writePage();
-          break;
-        case XREF:
-          writeXref();
-          break;
-        case DONE:
-          getContext().writeBuffer();
-          break;
-      }
+  /**
+   * Prints the stack trace of the given exception headered by the given header.
+   */
+  private synchronized void printException(
+    String header,
+    Exception exception
+  ) {
+    if (exception == null) {
+      return;
     }
-    getContext().close();
+    if (!Strings.isNullOrEmpty(header)) this.modal.print(
+        header + ":" + EOL + "  ",
+        Modal.ERROR
+      );
+    if (exception instanceof EDENRuntimeException) {
+      this.modal.println(exception.getMessage(), Modal.ERROR);
+      this.modal.println(((EDENRuntimeException) exception).getRemedy());
+    } else if (exception instanceof EDENException) {
+      this.modal.println(exception.getMessage(), Modal.ERROR);
+      this.modal.println(((EDENException) exception).getRemedy());
+    } else this.modal.println(exception.toString(), Modal.ERROR);
+    if (DEBUG) exception.printStackTrace(this.modal.getPrintStream());
   }
 
-  private void writePage() throws IOException {
-    if (getContext().lineMatches(REGEX_CONTENTS)) {
-      String line = getContext().getLine();
-      String[] contents = line.split(SPACE);
-      StringBuilder builder = new StringBuilder(line.length());
-      for (int index = 0; index < contents.length - 4; index++) builder
-        .append(contents[index])
-        .append(SPACE);
-      getContext()
-        .writeString(
-          builder.append(contents[contents.length - 4]).append("]").toString()
-        );
-    } else {
-      seek(REGEX_CATALOG, Mode.XREF);
-      getContext().writeBuffer();
-    }
+  /** Returns its recyclable object stream packer, making it if necessary. */
+  private synchronized Packer getPacker() {
+    if (this.packer == null) this.packer =
+      new Packer(this.options.getJobs(), this.throttle);
+    return this.packer;
   }
 
-  private void writePages() throws IOException {
-    readPages();
-    getContext().writeBuffer();
+  /** Returns the engine other than the selected one. */
+  private Engine getOtherEngine() {
+    return this.options.getEngine() == Engine.FAST ? Engine.LEGACY : Engine.FAST;
   }
 
-  private void writeXref() throws IOException {
-    if (getContext().isNotInObj()) if (getContext().isMarkSet()) {
-      if (getContext().lineMatches(REGEX_STARTXREF)) {
-        getContext().writeBuffer();
-        getContext().readLine();
-        getContext().writeMark();
-        getContext().setMode(Mode.DONE);
-        return;
-      }
-    } else {
-      int index = getContext().getLine().indexOf(XREF);
-      if (index > -1) getContext().setMark(getContext().getSize() + index);
-    }
-    getContext().writeBuffer();
+  /** Returns the sanitizer of the current thread. */
+  private Sanitizer getSanitizer() {
+    return this.sanitizers.get();
   }
 
-  /** Returns its recyclable execution context. */
-  private Context getContext() {
-    return this.context;
+  /** Returns the differential checking sanitizer of the current thread. */
+  private Sanitizer getChecker() {
+    return this.checkers.get();
   }
 }
@@ -0,0 +1,123 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.ObjectIndex.Entry;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the heads of indexed objects, which end before their stream or
+ * `endobj`, by object number. Heads are read from a channel on demand, and the
+ * least recently used are evicted once their total size exceeds its capacity,
+ * so following references at random stays fast without holding every object
+ * in memory.
+ *
+ * @author Brendon
+ */
+public class ObjectCache {
+
+  /** Default capacity in bytes. */
+  protected static final long CAPACITY = 16 << 20;
+  /** Size of a cached head in bytes besides its characters. */
+  protected static final int OVERHEAD = 64;
+
+  /** Object index. */
+  protected final ObjectIndex index;
+  /** Channel of the indexed PDF. */
+  protected final FileChannel channel;
+  /** Capacity in bytes. */
+  protected final long capacity;
+  /** Heads by object number, in order of access. */
+  protected final Map<Integer, String> heads = new LinkedHashMap<>(
+    16,
+    0.75f,
+    true
+  );
+  /** Total size of its heads in bytes. */
+  protected long size = 0;
+  /** Number of lookups that hit, missed, and evictions. */
+  protected long hits = 0, misses = 0, evictions = 0;
+
+  /**
+   * Makes an instance of the given index of the PDF in the given channel with
+   * the default capacity.
+   */
+  protected ObjectCache(ObjectIndex index, FileChannel channel) {
+    this(index, channel, CAPACITY);
+  }
+
+  /**
+   * Makes an instance of the given index of the PDF in the given channel with
+   * the given capacity in bytes.
+   */
+  protected ObjectCache(ObjectIndex index, FileChannel channel, long capacity) {
+    this.index = index;
+    this.channel = channel;
+    this.capacity = capacity;
+  }
+
+  /** Returns the head of the given object, or null if it is absent. */
+  protected String get(int number) throws IOException {
+    String out = this.heads.get(number);
+    if (out != null) {
+      this.hits++;
+      return out;
+    }
+    Entry entry = this.index.getEntry(number);
+    if (entry == null) return null;
+    this.misses++;
+    out =
+      entry.stream
+        ? Xref.readHead(this.channel, entry.offset)
+        : Xref.read(this.channel, entry.offset, (int) entry.length);
+    if (getSize(out) > this.capacity) return out;
+    this.heads.put(number, out);
+    this.size += getSize(out);
+    evict();
+    return out;
+  }
+
+  /** Evicts its least recently used heads until it is within capacity. */
+  protected void evict() {
+    Iterator<String> iterator = this.heads.values().iterator();
+    while (this.size > this.capacity && iterator.hasNext()) {
+      this.size -= getSize(iterator.next());
+      iterator.remove();
+      this.evictions++;
+    }
+  }
+
+  /** Returns the size of the given head in bytes. */
+  protected static long getSize(String head) {
+    return head.length() + OVERHEAD;
+  }
+
+  /** Returns its number of lookups that hit. */
+  protected long getHits() {
+    return this.hits;
+  }
+
+  /** Returns its number of lookups that missed. */
+  protected long getMisses() {
+    return this.misses;
+  }
+
+  /** Returns its number of evictions. */
+  protected long getEvictions() {
+    return this.evictions;
+  }
+
+  @Override
+  public String toString() {
+    return (
+      this.hits +
+      " hits, " +
+      this.misses +
+      " misses, " +
+      this.evictions +
+      " evictions"
+    );
+  }
+}
@@ -0,0 +1,317 @@
+package eden.mlsanitizer;
+
+import eden.common.excep.EDENExceptions;
+import eden.mlsanitizer.excep.BadPDFException;
+import eden.mlsanitizer.excep.PDFXrefException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes the objects of a PDF in one sequential pass. Each object is recorded
+ * with its position, length, and the objects that it references outside of its
+ * stream. Streams are skipped by their direct `/Length` where possible.
+ *
+ * @author Brendon
+ */
+public class ObjectIndex {
+
+  /** Input buffer capacity. */
+  protected static final int CAPACITY = 65536;
+  /** endobj command. */
+  protected static final String ENDOBJ = "endobj";
+  /** endstream command. */
+  protected static final String ENDSTREAM = "endstream";
+  /** startxref command. */
+  protected static final String STARTXREF = "startxref";
+  /** stream command. */
+  protected static final String STREAM = "stream";
+  /** trailer command. */
+  protected static final String TRAILER = "trailer";
+  protected static final Pattern REGEX_HEADER = Pattern.compile(
+    "^(\\p{Digit}+) (\\p{Digit}+) obj\\b.*$"
+  );
+  protected static final Pattern REGEX_LENGTH = Pattern.compile(
+    "/Length (\\p{Digit}++)(?! \\p{Digit}+ R)"
+  );
+  protected static final Pattern REGEX_REF = Pattern.compile(
+    "(\\p{Digit}+)\\s+\\p{Digit}+\\s+R\\b"
+  );
+
+  /** Item label for exceptions. */
+  protected final String label;
+  /** Objects by object number, in order of appearance. */
+  protected final Map<Integer, Entry> entries = new LinkedHashMap<>();
+  /** Line builder. */
+  protected final StringBuilder builder = new StringBuilder();
+  /** Input PDF stream. */
+  protected InputStream in;
+  /** Input position counter. */
+  protected long position;
+  /** Position of the first object. */
+  protected long head = -1;
+  /** Greatest object number allowed, bounded by the size of its PDF. */
+  protected long max;
+  /**
+   * Latest trailer dictionary with a catalog, such as the first-page trailer of
+   * a linearized PDF, or the latest one if none.
+   */
+  protected String trailer;
+  /** Whether its InputStream has reached the end-of-file. */
+  protected boolean eof;
+
+  /** Makes an instance with the given label. */
+  protected ObjectIndex(String label) {
+    this.label = label;
+  }
+
+  /** Indexes the PDF at the given path. */
+  protected ObjectIndex read(Path path) throws BadPDFException, IOException {
+    this.entries.clear();
+    this.position = 0;
+    this.head = -1;
+    this.trailer = null;
+    this.eof = false;
+    this.max = Math.min(Integer.MAX_VALUE - 8, Files.size(path));
+    try (
+      InputStream in = new BufferedInputStream(
+        Files.newInputStream(path),
+        CAPACITY
+      )
+    ) {
+      this.in = in;
+      String line;
+      long start;
+      Matcher matcher;
+      while (true) {
+        start = this.position;
+        line = readLine();
+        if (line == null) break;
+        matcher = REGEX_HEADER.matcher(line);
+        if (matcher.matches()) readObject(
+          new Entry(
+            parseNumber(matcher.group(1), Long.toString(start)),
+            (int) parseBounded(
+              matcher.group(2),
+              Xref.MAX_GEN,
+              Long.toString(start)
+            ),
+            start
+          ),
+          line
+        ); else if (line.startsWith(TRAILER)) readTrailer(line);
+      }
+    }
+    if (this.trailer == null) throw new PDFXrefException(
+      EDENExceptions.makeSubject(this.label, TRAILER)
+    );
+    return this;
+  }
+
+  /** Reads the rest of the given object whose header is the given line. */
+  protected void readObject(Entry entry, String line)
+    throws BadPDFException, IOException {
+    if (this.head < 0) this.head = entry.offset;
+    StringBuilder dictionary = new StringBuilder(line);
+    Matcher matcher;
+    while (line != null && !isEndobj(line)) {
+      if (isStream(line)) {
+        entry.stream = true;
+        matcher = REGEX_LENGTH.matcher(dictionary);
+        if (matcher.find()) skip(Xref.parseDigits(matcher.group(1)));
+        do line = readLine(); while (
+          line != null && !line.startsWith(ENDSTREAM)
+        );
+        if (line == null || isEndobj(line)) break;
+      }
+      line = readLine();
+      if (line != null && !isStream(line)) dictionary
+        .append('\n')
+        .append(line);
+    }
+    entry.length = this.position - entry.offset;
+    List<Integer> references = new ArrayList<>();
+    matcher = REGEX_REF.matcher(dictionary);
+    while (matcher.find()) references.add(
+      parseNumber(matcher.group(1), Long.toString(entry.offset))
+    );
+    entry.references =
+      references.stream().mapToInt(Integer::intValue).toArray();
+    this.entries.remove(entry.number);
+    this.entries.put(entry.number, entry);
+  }
+
+  /**
+   * Reads the trailer dictionary that starts at the given line, whose
+   * references must be in range.
+   */
+  protected void readTrailer(String line) throws BadPDFException, IOException {
+    StringBuilder trailer = new StringBuilder(
+      line.substring(TRAILER.length()).trim()
+    );
+    while ((line = readLine()) != null && !line.startsWith(STARTXREF)) trailer
+      .append('\n')
+      .append(line);
+    line = trailer.toString().trim();
+    Matcher matcher = REGEX_REF.matcher(line);
+    while (matcher.find()) parseNumber(matcher.group(1), TRAILER);
+    if (
+      this.trailer == null ||
+      Xref.REGEX_ROOT.matcher(line).find() ||
+      !Xref.REGEX_ROOT.matcher(this.trailer).find()
+    ) this.trailer = line;
+  }
+
+  /**
+   * Returns the numbers of objects reachable from the references in its
+   * trailer.
+   */
+  protected BitSet reach() {
+    BitSet out = new BitSet();
+    Deque<Integer> queue = new ArrayDeque<>();
+    Matcher matcher = REGEX_REF.matcher(this.trailer);
+    while (matcher.find()) queue.add(Integer.parseInt(matcher.group(1)));
+    Integer number;
+    Entry entry;
+    while ((number = queue.pollFirst()) != null) {
+      if (out.get(number)) continue;
+      entry = this.entries.get(number);
+      if (entry == null) continue;
+      out.set(number);
+      for (int reference : entry.references) if (!out.get(reference)) queue
+        .add(reference);
+    }
+    return out;
+  }
+
+  /**
+   * Parses the given object number about the given detail, which must not
+   * exceed its greatest object number allowed.
+   */
+  protected int parseNumber(String digits, String detail)
+    throws BadPDFException {
+    return (int) parseBounded(digits, this.max, detail);
+  }
+
+  /**
+   * Parses the given digits about the given detail, which must not exceed the
+   * given maximum.
+   */
+  protected long parseBounded(String digits, long max, String detail)
+    throws BadPDFException {
+    long out = Xref.parseDigits(digits);
+    if (out > max) throw new PDFXrefException(
+      EDENExceptions.makeSubject(this.label, detail)
+    );
+    return out;
+  }
+
+  /** Returns whether the given line ends an object. */
+  protected static boolean isEndobj(String line) {
+    return line.startsWith(ENDOBJ) || line.trim().endsWith(ENDOBJ);
+  }
+
+  /** Returns whether the given line starts a stream. */
+  protected static boolean isStream(String line) {
+    line = line.trim();
+    return line.endsWith(STREAM) && !line.endsWith(ENDSTREAM);
+  }
+
+  /**
+   * Reads and returns the next line from its InputStream, or null if it has
+   * reached the end-of-file.
+   */
+  protected String readLine() throws IOException {
+    if (this.eof) return null;
+    this.builder.setLength(0);
+    int acc;
+    while (true) {
+      acc = this.in.read();
+      if (acc == -1) {
+        this.eof = true;
+        return this.builder.length() == 0 ? null : this.builder.toString();
+      }
+      this.position++;
+      if (acc == '\n') return trimCr(this.builder).toString();
+      this.builder.append((char) acc);
+    }
+  }
+
+  /** Skips the given number of bytes from its InputStream. */
+  protected void skip(long count) throws IOException {
+    long skipped;
+    while (count > 0 && (skipped = this.in.skip(count)) > 0) {
+      count -= skipped;
+      this.position += skipped;
+    }
+  }
+
+  /** Removes a trailing carriage return from the given builder. */
+  protected static StringBuilder trimCr(StringBuilder builder) {
+    if (
+      builder.length() > 0 && builder.charAt(builder.length() - 1) == '\r'
+    ) builder.setLength(builder.length() - 1);
+    return builder;
+  }
+
+  /** Returns its objects, in order of appearance. */
+  protected Collection<Entry> getEntries() {
+    return this.entries.values();
+  }
+
+  /** Returns the given object, or null if it is absent. */
+  protected Entry getEntry(int number) {
+    return this.entries.get(number);
+  }
+
+  /** Returns the position of its first object. */
+  protected long getHead() {
+    return Math.max(0, this.head);
+  }
+
+  /** Returns its latest trailer dictionary, preferring those with a catalog. */
+  protected String getTrailer() {
+    return this.trailer;
+  }
+
+  /** Returns one more than its greatest object number. */
+  protected int getSize() {
+    int out = 0;
+    for (int number : this.entries.keySet()) out = Math.max(out, number + 1);
+    return out;
+  }
+
+  /** Encapsulates an indexed object. */
+  protected static class Entry {
+
+    /** Object and generation numbers. */
+    protected final int number, gen;
+    /** Object position. */
+    protected final long offset;
+    /** Object length in bytes, including its `endobj` line. */
+    protected long length;
+    /** Numbers of referenced objects. */
+    protected int[] references;
+    /** Whether it has a stream. */
+    protected boolean stream = false;
+
+    /** Makes an instance with the given numbers and position. */
+    protected Entry(int number, int gen, long offset) {
+      this.number = number;
+      this.gen = gen;
+      this.offset = offset;
+    }
+  }
+}
@@ -0,0 +1,268 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.excep.BadOptionException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Encapsulates command-line options.
+ *
+ * @author Brendon
+ */
+public class Options {
+
+  /** Option prefix. */
+  protected static final String PREFIX = "--";
+  /** Option name and value separator. */
+  protected static final char SEPARATOR = '=';
+  /** Greatest number of worker threads in the background. */
+  protected static final int BACKGROUND_JOBS = 1;
+  /** Line length limit in bytes, or 0 if unlimited. */
+  protected long lineLimit = 0;
+  /** Seek limit in bytes, or 0 if unlimited. */
+  protected long seekLimit = 0;
+  /** Time limit in seconds, or 0 if unlimited. */
+  protected long timeLimit = 0;
+  /** Whether to verify outputs. */
+  protected boolean verify = false;
+  /** Whether to compact outputs. */
+  protected boolean compact = false;
+  /** Whether to pack outputs into object streams. */
+  protected boolean compress = false;
+  /** Engine. */
+  protected Engine engine = Engine.LEGACY;
+  /** Whether to check the engines against each other. */
+  protected boolean diffCheck = false;
+  /** I/O rate limit in bytes per second, or 0 if unlimited. */
+  protected long rateLimit = 0;
+  /** Whether to run in the background. */
+  protected boolean background = false;
+  /** Whether to append changes to copies of inputs. */
+  protected boolean incremental = false;
+  /** Directory to watch, or null if none. */
+  protected Path watch = null;
+  /** Output directory, or null if beside inputs. */
+  protected Path output = null;
+  /** Number of worker threads. */
+  protected int jobs = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Parses the given command-line arguments into itself, then returns its
+   * operands. An option value follows its name either after a {@code =} or as
+   * the next argument. {@code --} ends the options.
+   */
+  protected List<String> parse(String[] arguments) throws BadOptionException {
+    Deque<String> queue = new ArrayDeque<>(Arrays.asList(arguments));
+    List<String> operands = new ArrayList<>(arguments.length);
+    String argument, name, value;
+    int index;
+    while ((argument = queue.pollFirst()) != null) {
+      if (!argument.startsWith(PREFIX)) {
+        operands.add(argument);
+        continue;
+      }
+      if (argument.equals(PREFIX)) {
+        operands.addAll(queue);
+        break;
+      }
+      index = argument.indexOf(SEPARATOR);
+      name = index < 0 ? argument : argument.substring(0, index);
+      value = index < 0 ? null : argument.substring(index + 1);
+      switch (name) {
+        case "--max-line":
+          this.lineLimit = parseCount(name, takeValue(name, value, queue));
+          break;
+        case "--max-seek":
+          this.seekLimit = parseCount(name, takeValue(name, value, queue));
+          break;
+        case "--max-time":
+          this.timeLimit = parseCount(name, takeValue(name, value, queue));
+          break;
+        case "--max-rate":
+          this.rateLimit = parseCount(name, takeValue(name, value, queue));
+          break;
+        case "--background":
+          this.background = takeFlag(name, value);
+          break;
+        case "--engine":
+          this.engine = parseEngine(name, takeValue(name, value, queue));
+          break;
+        case "--diff-check":
+          this.diffCheck = takeFlag(name, value);
+          break;
+        case "--incremental":
+          this.incremental = takeFlag(name, value);
+          break;
+        case "--watch":
+          this.watch = parseDirectory(name, takeValue(name, value, queue));
+          break;
+        case "--output":
+          this.output = parseDirectory(name, takeValue(name, value, queue));
+          break;
+        case "--jobs":
+          this.jobs =
+            (int) Math.min(
+              Integer.MAX_VALUE,
+              parseCount(name, takeValue(name, value, queue))
+            );
+          if (this.jobs == 0) throw new BadOptionException(
+            name + SEPARATOR + 0
+          );
+          break;
+        case "--compress":
+          this.compress = takeFlag(name, value);
+          break;
+        case "--compact":
+          this.compact = takeFlag(name, value);
+          break;
+        case "--verify":
+          this.verify = takeFlag(name, value);
+          break;
+        default:
+          throw new BadOptionException(argument);
+      }
+    }
+    // An incremental update keeps the original bytes, which these rewrite.
+    if (
+      this.incremental && (this.compact || this.compress)
+    ) throw new BadOptionException(
+      "--incremental " + (this.compact ? "--compact" : "--compress")
+    );
+    return operands;
+  }
+
+  /**
+   * Returns the given inline value, or the next argument from the given queue
+   * if the former is null.
+   */
+  protected String takeValue(String name, String value, Deque<String> queue)
+    throws BadOptionException {
+    if (value == null) value = queue.pollFirst();
+    if (value == null) throw new BadOptionException(name);
+    return value;
+  }
+
+  /** Returns true if the given inline value of a flag is null. */
+  protected boolean takeFlag(String name, String value)
+    throws BadOptionException {
+    if (value != null) throw new BadOptionException(
+      name + SEPARATOR + value
+    );
+    return true;
+  }
+
+  /** Parses the given value as an engine name. */
+  protected Engine parseEngine(String name, String value)
+    throws BadOptionException {
+    for (Engine engine : Engine.values()) if (
+      engine.toString().equalsIgnoreCase(value)
+    ) return engine;
+    throw new BadOptionException(name + SEPARATOR + value);
+  }
+
+  /** Parses the given value as the path of an existing directory. */
+  protected Path parseDirectory(String name, String value)
+    throws BadOptionException {
+    try {
+      Path out = Paths.get(value);
+      if (out.toFile().isDirectory()) return out;
+    } catch (InvalidPathException exception) {}
+    throw new BadOptionException(name + SEPARATOR + value);
+  }
+
+  /** Parses the given value as a non-negative count. */
+  protected long parseCount(String name, String value)
+    throws BadOptionException {
+    try {
+      long out = Long.parseLong(value);
+      if (out >= 0) return out;
+    } catch (NumberFormatException exception) {}
+    throw new BadOptionException(name + SEPARATOR + value);
+  }
+
+  /** Returns its line length limit in bytes, or 0 if unlimited. */
+  protected long getLineLimit() {
+    return this.lineLimit;
+  }
+
+  /** Returns its seek limit in bytes, or 0 if unlimited. */
+  protected long getSeekLimit() {
+    return this.seekLimit;
+  }
+
+  /** Returns its time limit in seconds, or 0 if unlimited. */
+  protected long getTimeLimit() {
+    return this.timeLimit;
+  }
+
+  /** Returns whether to verify outputs. */
+  protected boolean isVerifying() {
+    return this.verify;
+  }
+
+  /** Returns whether to compact outputs. */
+  protected boolean isCompacting() {
+    return this.compact;
+  }
+
+  /** Returns whether to pack outputs into object streams. */
+  protected boolean isCompressing() {
+    return this.compress;
+  }
+
+  /** Returns its I/O rate limit in bytes per second, or 0 if unlimited. */
+  protected long getRateLimit() {
+    return this.rateLimit;
+  }
+
+  /** Returns whether to run in the background. */
+  protected boolean isBackground() {
+    return this.background;
+  }
+
+  /** Returns its engine. */
+  protected Engine getEngine() {
+    return this.engine;
+  }
+
+  /** Returns whether to check the engines against each other. */
+  protected boolean isDiffChecking() {
+    return this.diffCheck;
+  }
+
+  /** Returns whether to append changes to copies of inputs. */
+  protected boolean isIncremental() {
+    return this.incremental;
+  }
+
+  /** Returns the directory to watch, or null if none. */
+  protected Path getWatch() {
+    return this.watch;
+  }
+
+  /** Returns its output directory, or null if beside inputs. */
+  protected Path getOutput() {
+    return this.output;
+  }
+
+  /**
+   * Returns its number of worker threads, which is capped in the background.
+   */
+  protected int getJobs() {
+    return this.background ? Math.min(BACKGROUND_JOBS, this.jobs) : this.jobs;
+  }
+
+  /** Engines. */
+  protected enum Engine {
+    /** {@link Context}, the reference engine. */
+    LEGACY,
+    /** {@link FastContext}. */
+    FAST,
+  }
+}
@@ -0,0 +1,356 @@
+package eden.mlsanitizer;
+
+import eden.mlsanitizer.ObjectIndex.Entry;
+import eden.mlsanitizer.excep.BadPDFException;
+import eden.mlsanitizer.excep.PDFObjectOpenException;
+import eden.mlsanitizer.excep.PDFOffsetException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * Packs the objects of a PDF without streams into Flate-compressed object
+ * streams, followed by a cross-reference stream. Object streams are compressed
+ * in parallel by its worker threads, each borrowing a recycled Deflater.
+ * Instances are recyclable and must be closed after use.
+ *
+ * @author Brendon
+ */
+public class Packer implements AutoCloseable {
+
+  /** Number of objects per object stream. */
+  protected static final int CAPACITY = 100;
+  /** Compression level. */
+  protected static final int LEVEL = Deflater.BEST_COMPRESSION;
+  /** Output PDF version. */
+  protected static final String VERSION = "%PDF-1.5";
+  protected static final Pattern REGEX_BODY = Pattern.compile(
+    "\\A\\p{Digit}+\\s+\\p{Digit}+\\s+obj\\b(.*)endobj\\s*\\z",
+    Pattern.DOTALL
+  );
+  protected static final Pattern REGEX_TRAILER = Pattern.compile(
+    "\\A\\s*<<(.*)>>\\s*\\z",
+    Pattern.DOTALL
+  );
+  protected static final Pattern REGEX_TRAILER_KEY = Pattern.compile(
+    "/(Size|Prev|XRefStm)\\s+\\p{Digit}+"
+  );
+  protected static final Pattern REGEX_VERSION = Pattern.compile(
+    "\\A%PDF-1\\.[0-4]"
+  );
+
+  /** Worker threads. */
+  protected final ExecutorService workers;
+  /** Recycled Deflaters. */
+  protected final BlockingQueue<Deflater> deflaters;
+  /** Shared I/O throttle, or null if unthrottled. */
+  protected final Throttle throttle;
+
+  /**
+   * Makes an instance with the given number of worker threads that writes
+   * through the given throttle, if any.
+   */
+  protected Packer(int threads, Throttle throttle) {
+    this.throttle = throttle;
+    this.workers =
+      Executors.newFixedThreadPool(
+        threads,
+        runnable -> {
+          Thread thread = new Thread(runnable, "Packer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      );
+    this.deflaters = new ArrayBlockingQueue<>(threads);
+    for (int index = 0; index < threads; index++) this.deflaters.add(
+        new Deflater(LEVEL)
+      );
+  }
+
+  /**
+   * Packs the PDF at the given path into the other given path, then returns
+   * true. If {@code compact} is true, then only objects reachable from its
+   * trailer are kept. If the former is encrypted, then this returns false
+   * without writing anything, as its strings are encrypted by object.
+   */
+  protected boolean pack(Path in, Path out, String label, boolean compact)
+    throws BadPDFException, IOException {
+    ObjectIndex index = new ObjectIndex(label).read(in);
+    if (
+      Linearizer.REGEX_ENCRYPT.matcher(index.getTrailer()).find()
+    ) return false;
+    int size = index.getSize();
+    BitSet kept = new BitSet(size);
+    if (compact) kept.or(index.reach()); else index
+      .getEntries()
+      .forEach(entry -> kept.set(entry.number));
+    List<List<Entry>> chunks = new ArrayList<>();
+    List<Entry> direct = new ArrayList<>(), chunk = null;
+    for (Entry entry : index.getEntries()) {
+      if (!kept.get(entry.number)) continue;
+      if (entry.stream || entry.gen != 0) {
+        direct.add(entry);
+        continue;
+      }
+      if (chunk == null || chunk.size() == CAPACITY) chunks.add(
+        chunk = new ArrayList<>(CAPACITY)
+      );
+      chunk.add(entry);
+    }
+    // Rows: 0 = free, 1 = offset, 2 = packed; its number, then its index.
+    int total = size + chunks.size() + 1;
+    byte[] types = new byte[total];
+    long[] fields = new long[total];
+    int[] gens = new int[total];
+    try (
+      FileChannel input = FileChannel.open(in, StandardOpenOption.READ);
+      WritableByteChannel output = Compactor.openOutput(out, this.throttle)
+    ) {
+      List<Future<Stream>> packed = new ArrayList<>(chunks.size());
+      for (List<Entry> entries : chunks) packed.add(
+        this.workers.submit(() -> pack(input, entries, label))
+      );
+      String header = Xref.read(input, 0, (int) index.getHead());
+      long position = header.length();
+      Compactor.write(
+        output,
+        REGEX_VERSION.matcher(header).replaceFirst(VERSION)
+      );
+      for (Entry entry : direct) {
+        types[entry.number] = 1;
+        fields[entry.number] = position;
+        gens[entry.number] = entry.gen;
+        position +=
+          Compactor.transfer(input, entry.offset, entry.length, output);
+      }
+      int number;
+      for (int stream = 0; stream < chunks.size(); stream++) {
+        number = size + stream;
+        for (int member = 0; member < chunks.get(stream).size(); member++) {
+          types[chunks.get(stream).get(member).number] = 2;
+          fields[chunks.get(stream).get(member).number] = number;
+          gens[chunks.get(stream).get(member).number] = member;
+        }
+        types[number] = 1;
+        fields[number] = position;
+        position += write(output, number, get(packed.get(stream)));
+      }
+      number = total - 1;
+      types[number] = 1;
+      fields[number] = position;
+      int width = getWidth(Math.max(position, total));
+      write(
+        output,
+        number,
+        new Stream(
+          "/Type /XRef /Size " +
+          total +
+          " /W [1 " +
+          width +
+          " 2] " +
+          makeTrailer(index.getTrailer()),
+          deflate(makeRows(types, fields, gens, width))
+        )
+      );
+      Compactor.write(
+        output,
+        Xref.STARTXREF + "\n" + position + "\n%%EOF\n"
+      );
+    }
+    return true;
+  }
+
+  /**
+   * Returns the given objects of the PDF labeled with the given label as a
+   * compressed object stream.
+   */
+  protected Stream pack(FileChannel in, List<Entry> entries, String label)
+    throws BadPDFException, IOException {
+    StringBuilder offsets = new StringBuilder(), bodies = new StringBuilder();
+    String object;
+    Matcher matcher;
+    for (Entry entry : entries) {
+      object = Xref.read(in, entry.offset, (int) entry.length);
+      matcher = REGEX_BODY.matcher(object);
+      if (!matcher.matches()) throw (
+        Xref.REGEX_HEADER.matcher(object).lookingAt()
+          ? new PDFObjectOpenException(label)
+          : new PDFOffsetException(label)
+      );
+      offsets
+        .append(entry.number)
+        .append(' ')
+        .append(bodies.length())
+        .append(' ');
+      bodies
+        .append(matcher.group(1).trim())
+        .append('\n');
+    }
+    offsets.setCharAt(offsets.length() - 1, '\n');
+    int first = offsets.length();
+    return new Stream(
+      "/Type /ObjStm /N " + entries.size() + " /First " + first,
+      deflate(
+        offsets.append(bodies).toString().getBytes(StandardCharsets.ISO_8859_1)
+      )
+    );
+  }
+
+  /** Compresses the given bytes with a borrowed Deflater. */
+  protected byte[] deflate(byte[] bytes) throws IOException {
+    Deflater deflater;
+    try {
+      deflater = this.deflaters.take();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exception);
+    }
+    try {
+      deflater.reset();
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) out.write(
+        buffer,
+        0,
+        deflater.deflate(buffer)
+      );
+      return out.toByteArray();
+    } finally {
+      this.deflaters.add(deflater);
+    }
+  }
+
+  /**
+   * Writes the given Flate-compressed stream as an object with the given
+   * number, then returns the number of bytes written.
+   */
+  protected static long write(
+    WritableByteChannel out,
+    int number,
+    Stream stream
+  ) throws IOException {
+    byte[] head =
+      (
+        number +
+        " 0 obj\n<< " +
+        stream.entries +
+        " /Filter /FlateDecode /Length " +
+        stream.data.length +
+        " >>\nstream\n"
+      ).getBytes(StandardCharsets.ISO_8859_1);
+    byte[] tail = "\nendstream\nendobj\n".getBytes(
+        StandardCharsets.ISO_8859_1
+      );
+    ByteBuffer buffer = ByteBuffer.allocate(
+      head.length + stream.data.length + tail.length
+    );
+    buffer.put(head).put(stream.data).put(tail).flip();
+    long length = buffer.remaining();
+    while (buffer.hasRemaining()) out.write(buffer);
+    return length;
+  }
+
+  /**
+   * Returns the rows of a cross-reference stream of the given entry types and
+   * fields.
+   */
+  protected static byte[] makeRows(
+    byte[] types,
+    long[] fields,
+    int[] gens,
+    int width
+  ) {
+    ByteBuffer out = ByteBuffer.allocate(types.length * (width + 3));
+    int free = 0;
+    for (int number = types.length - 1; number >= 0; number--) if (
+      types[number] == 0
+    ) {
+      fields[number] = free;
+      gens[number] = number == 0 ? Xref.MAX_GEN : 0;
+      free = number;
+    }
+    for (int number = 0; number < types.length; number++) {
+      out.put(types[number]);
+      for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) out.put(
+        (byte) (fields[number] >>> shift)
+      );
+      out.put((byte) (gens[number] >>> 8)).put((byte) gens[number]);
+    }
+    return out.array();
+  }
+
+  /**
+   * Returns the given trailer dictionary without its delimiters and its
+   * entries about cross-reference sections.
+   */
+  protected static String makeTrailer(String trailer) {
+    Matcher matcher = REGEX_TRAILER.matcher(trailer);
+    if (matcher.matches()) trailer = matcher.group(1);
+    return REGEX_TRAILER_KEY.matcher(trailer).replaceAll("").trim();
+  }
+
+  /** Returns the number of bytes to hold the given offset. */
+  protected static int getWidth(long offset) {
+    int out = 1;
+    while ((offset >>>= 8) > 0) out++;
+    return out;
+  }
+
+  /** Waits for and returns the result of the given future. */
+  protected static Stream get(Future<Stream> future)
+    throws BadPDFException, IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exception);
+    } catch (ExecutionException exception) {
+      if (exception.getCause() instanceof BadPDFException) throw (BadPDFException) exception
+        .getCause();
+      if (exception.getCause() instanceof IOException) throw (IOException) exception
+        .getCause();
+      throw new IOException(exception.getCause());
+    }
+  }
+
+  /** Shuts down its worker threads and frees its Deflaters. */
+  @Override
+  public void close() {
+    this.workers.shutdownNow();
+    this.deflaters.forEach(Deflater::end);
+  }
+
+  /** Encapsulates a compressed stream. */
+  protected static class Stream {
+
+    /** Dictionary entries other than its filter and length. */
+    protected final String entries;
+    /** Compressed data. */
+    protected final byte[] data;
+
+    /** Makes an instance with the given dictionary entries and data. */
+    protected Stream(String entries, byte[] data) {
+      this.entries = entries;
+      this.data = data;
+    }
+  }
+}
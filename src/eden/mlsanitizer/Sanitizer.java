@@ -0,0 +1,535 @@
+package eden.mlsanitizer;
+
+import static eden.common.shared.Constants.NUL_INT;
+import static eden.common.shared.Constants.SPACE;
+import static eden.mlsanitizer.Heuristics.DIST_HOOK_URI;
+import static eden.mlsanitizer.Heuristics.REGEX_ANNOTS;
+import static eden.mlsanitizer.Heuristics.REGEX_AUTHOR;
+import static eden.mlsanitizer.Heuristics.REGEX_CATALOG;
+import static eden.mlsanitizer.Heuristics.REGEX_CONTENTS;
+import static eden.mlsanitizer.Heuristics.REGEX_CREATION;
+import static eden.mlsanitizer.Heuristics.REGEX_CREATOR;
+import static eden.mlsanitizer.Heuristics.REGEX_ENDOBJ;
+import static eden.mlsanitizer.Heuristics.REGEX_HOOK;
+import static eden.mlsanitizer.Heuristics.REGEX_KEYWORDS;
+import static eden.mlsanitizer.Heuristics.REGEX_MODDATE;
+import static eden.mlsanitizer.Heuristics.REGEX_OBJ;
+import static eden.mlsanitizer.Heuristics.REGEX_PAGES;
+import static eden.mlsanitizer.Heuristics.REGEX_PDF;
+import static eden.mlsanitizer.Heuristics.REGEX_PRODUCER;
+import static eden.mlsanitizer.Heuristics.REGEX_STARTXREF;
+import static eden.mlsanitizer.Heuristics.REGEX_SUBJECT;
+import static eden.mlsanitizer.Heuristics.REGEX_TITLE;
+import static eden.mlsanitizer.Heuristics.REGEX_URI;
+
+import eden.common.excep.EDENExceptions;
+import eden.mlsanitizer.Context.Flag;
+import eden.mlsanitizer.Context.Mode;
+import eden.mlsanitizer.excep.BadPDFException;
+import eden.mlsanitizer.excep.NonPDFException;
+import eden.mlsanitizer.excep.PDFLineLimitException;
+import eden.mlsanitizer.excep.PDFObjectOpenException;
+import eden.mlsanitizer.excep.PDFSeekLimitException;
+import eden.mlsanitizer.excep.PDFTimeLimitException;
+import eden.mlsanitizer.excep.PDFXrefException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sanitizes one PDF at a time with its recyclable execution context. The
+ * context decides how lines are read and written, so that different engines
+ * share the same detection logic. While writing, the positions of object
+ * headers and cross-reference tables are tracked so that table entries and
+ * trailer {@code /Prev} offsets that follow them are rewritten to match, and
+ * entries of cut objects are freed. Each table section is held until it ends,
+ * so that its free entries can be linked in order.
+ *
+ * @author Brendon
+ */
+public class Sanitizer {
+
+  /** trailer command. */
+  private static final String TRAILER = "trailer";
+  /** xref command. */
+  private static final String XREF = "xref";
+  /** Length of a cross-reference entry before its end-of-line. */
+  private static final int ENTRY = 18;
+  private static final Pattern REGEX_ENTRY = Pattern.compile(
+    "^(\\p{Digit}{10}) (\\p{Digit}{5}) n"
+  );
+  private static final Pattern REGEX_ROW = Pattern.compile(
+    "^\\p{Digit}{10} (\\p{Digit}{5}) [fn]\\s*$"
+  );
+  private static final Pattern REGEX_OFFSET = Pattern.compile(
+    "^\\p{Digit}+$"
+  );
+  private static final Pattern REGEX_PREV = Pattern.compile(
+    "/Prev\\s+(\\p{Digit}+)(?!\\s+\\p{Digit}+\\s+R)"
+  );
+
+  /** Recyclable execution context. */
+  private final Context context;
+  /**
+   * Output positions of object headers and cross-reference tables by input
+   * position, or {@code NUL_INT} if cut.
+   */
+  private final Map<Long, Long> moves = new HashMap<>();
+  /** Lines of the cross-reference table section being written. */
+  private final List<String> rows = new ArrayList<>();
+  /** Indices in its rows of free entries by object number. */
+  private final TreeMap<Long, Integer> frees = new TreeMap<>();
+  /** Object number of the next entry in its rows. */
+  private long number;
+  /** Whether an entry in its rows was freed. */
+  private boolean freed;
+  /** Current working item. */
+  private String item;
+
+  /** Makes an instance with the given recyclable execution context. */
+  protected Sanitizer(Context context) {
+    this.context = context;
+  }
+
+  /**
+   * Reads the given input labeled with the given item, then returns whether it
+   * needs sanitizing.
+   */
+  protected boolean read(Path input, String item)
+    throws BadPDFException, IOException {
+    this.item = item;
+    getContext().initialize(getContext().openInput(input));
+    read();
+    return !getContext().isClean();
+  }
+
+  /** Writes the sanitized form of the given read input to the given output. */
+  protected void write(Path input, Path output)
+    throws BadPDFException, IOException {
+    getContext()
+      .setForWriting(
+        getContext().openInput(input),
+        getContext().openOutput(output)
+      );
+    write();
+    getContext().close();
+  }
+
+  /**
+   * Copies the given read input to the given output, then appends the
+   * sanitized versions of only the objects that change as an incremental
+   * update. Objects whose headers are cut are removed.
+   */
+  protected void append(Path input, Path output)
+    throws BadPDFException, IOException {
+    ByteArrayOutputStream object = new ByteArrayOutputStream();
+    getContext().setForWriting(getContext().openInput(input), object);
+    Appender appender = new Appender(
+      this.item,
+      getContext().getThrottle()
+    );
+    Long mark = getContext().nextMark();
+    boolean penDown = true, cut = false, changed = false;
+    int number = NUL_INT;
+    while (true) {
+      getContext().readLine();
+      if (getContext().isEof()) break;
+      checkLimits();
+      if (mark != null && getContext().getLineCount() == mark) {
+        penDown = !penDown;
+        mark = getContext().nextMark();
+      }
+      if (getContext().lineMatches(REGEX_OBJ)) {
+        number = parseNumber(getContext().getLine().split(SPACE, 2)[0]);
+        object.reset();
+        cut = !penDown;
+        changed = false;
+      } else if (
+        number == NUL_INT &&
+        mark == null &&
+        penDown &&
+        getContext().getMode() == Mode.XREF
+      ) break;
+      if (penDown) changed |= writeLine(); else changed = true;
+      if (
+        number == NUL_INT || !getContext().lineMatches(REGEX_ENDOBJ)
+      ) continue;
+      if (cut) appender.remove(number); else if (changed) appender.update(
+        number,
+        object.toByteArray()
+      );
+      number = NUL_INT;
+    }
+    getContext().close();
+    appender.append(input, output);
+  }
+
+  /** Closes the I/O streams of its context. */
+  protected void close() throws IOException {
+    getContext().close();
+  }
+
+  /** Returns a copy of the mark queue of its context. */
+  protected List<Long> getMarks() {
+    return new ArrayList<>(getContext().getMarks());
+  }
+
+  private void read() throws BadPDFException, IOException {
+    main:while (getContext().readLine() != null) {
+      checkLimits();
+      if (getContext().isOverSeek()) throw new PDFSeekLimitException(
+        this.item
+      );
+      switch (getContext().getMode()) {
+        case PDF:
+          readPdf();
+          break;
+        case PAGES:
+          readPages();
+          break;
+        case PAGE:
+          readPage();
+          break;
+        case HOOK:
+          readHook();
+          break;
+        case URI:
+          readUri();
+          break;
+        case CATALOG:
+          readCatalog();
+          break;
+        case SEEK:
+          seek(REGEX_ENDOBJ, Mode.INFO);
+          break;
+        case INFO:
+          readInfo();
+          break;
+        case DONE:
+          break main;
+      }
+    }
+    if (getContext().hasOpenObjs()) throw new PDFObjectOpenException(
+      EDENExceptions.makeSubject(
+        this.item,
+        Long.toString(getContext().getObjMark())
+      )
+    );
+  }
+
+  /** Cancels the current working item if it exceeds any limit. */
+  private void checkLimits() throws BadPDFException {
+    if (getContext().isOverflown()) throw new PDFLineLimitException(
+      EDENExceptions.makeSubject(
+        this.item,
+        Long.toString(getContext().getLineCount())
+      )
+    );
+    if (getContext().isOverdue()) throw new PDFTimeLimitException(this.item);
+  }
+
+  /**
+   * Parses the given object number, which must leave room for one more in a
+   * cross-reference section.
+   */
+  private int parseNumber(String digits) throws PDFXrefException {
+    long out = Xref.parseDigits(digits);
+    if (out >= Integer.MAX_VALUE) throw new PDFXrefException(
+      EDENExceptions.makeSubject(
+        this.item,
+        Long.toString(getContext().getLineCount())
+      )
+    );
+    return (int) out;
+  }
+
+  private void readCatalog() {
+    if (getContext().lineMatches(REGEX_CATALOG)) {
+      getContext().addMarkToObjMark();
+      getContext().setMode(Mode.SEEK);
+    }
+  }
+
+  private void readHook() {
+    if (getContext().lineMatches(REGEX_HOOK)) {
+      getContext().setMark(getContext().getLineCount());
+      getContext().setMode(Mode.URI);
+    }
+  }
+
+  private void readInfo() {
+    if (
+      readInfo(Flag.AUTHOR, REGEX_AUTHOR) &&
+      readInfo(Flag.CREATION, REGEX_CREATION) &&
+      readInfo(Flag.CREATOR, REGEX_CREATOR) &&
+      readInfo(Flag.KEYWORDS, REGEX_KEYWORDS) &&
+      readInfo(Flag.MODDATE, REGEX_MODDATE) &&
+      readInfo(Flag.PRODUCER, REGEX_PRODUCER) &&
+      readInfo(Flag.SUBJECT, REGEX_SUBJECT) &&
+      readInfo(Flag.TITLE, REGEX_TITLE) &&
+      getContext().lineMatches(REGEX_ENDOBJ)
+    ) getContext().setMode(Mode.DONE);
+  }
+
+  private boolean readInfo(Flag flag, Pattern pattern) {
+    if (!getContext().hasFlag(flag) && getContext().lineMatches(pattern)) {
+      getContext().addLine();
+      getContext().raiseFlag(flag);
+      return false;
+    }
+    return true;
+  }
+
+  private void readPage() {
+    if (getContext().lineMatches(REGEX_ANNOTS)) getContext()
+      .addLine(); else readHook();
+  }
+
+  private void readPages() {
+    seek(REGEX_PAGES, Mode.PAGE);
+  }
+
+  private void readPdf() throws NonPDFException {
+    if (getContext().getLineCount() > 1) throw new NonPDFException(this.item);
+    seek(REGEX_PDF, Mode.PAGES);
+  }
+
+  private void readUri() {
+    if (getContext().lineMatches(REGEX_URI)) getContext()
+      .setMode(
+        getContext().getDistanceFromMark() == DIST_HOOK_URI
+          ? Mode.CATALOG
+          : Mode.HOOK
+      );
+  }
+
+  private void seek(Pattern pattern, Mode mode) {
+    if (getContext().lineMatches(pattern)) getContext().setMode(mode);
+  }
+
+  private void write() throws BadPDFException, IOException {
+    Long mark = getContext().nextMark();
+    boolean penDown = true, table = false, trailer = false, offset = false;
+    boolean xref;
+    long start;
+    String line, moved;
+    this.moves.clear();
+    while (true) {
+      start = getContext().getPosition();
+      line = getContext().readLine();
+      if (getContext().isEof()) break;
+      checkLimits();
+      if (mark != null && getContext().getLineCount() == mark) {
+        penDown = !penDown;
+        mark = getContext().nextMark();
+      }
+      xref = line.trim().equals(XREF);
+      if (table && (xref || !isRow(line))) {
+        table = false;
+        writeRows();
+      }
+      if (xref) table = true; else if (line.startsWith(TRAILER)) trailer =
+        true; else if (line.startsWith(Xref.STARTXREF)) trailer = false;
+      if (
+        xref || Xref.REGEX_HEADER.matcher(line).lookingAt()
+      ) this.moves.put(start, penDown ? getContext().getSize() : NUL_INT);
+      if (!penDown) continue;
+      if (table && !xref) {
+        addRow(line);
+        continue;
+      }
+      moved = trailer ? movePrev(line) : offset ? moveOffset(line) : null;
+      offset = line.trim().equals(Xref.STARTXREF);
+      if (moved == null) writeLine(); else getContext().writeString(moved);
+    }
+    writeRows();
+    getContext().close();
+  }
+
+  /**
+   * Returns whether the given line belongs to a cross-reference table section,
+   * being an entry, a subsection header, or blank.
+   */
+  private static boolean isRow(String line) {
+    String trimmed = line.trim();
+    return (
+      trimmed.isEmpty() ||
+      Xref.REGEX_SUBSECTION.matcher(trimmed).matches() ||
+      REGEX_ROW.matcher(line).matches()
+    );
+  }
+
+  /**
+   * Adds the given line of a cross-reference table section to its rows, with
+   * its entry moved if any.
+   */
+  private void addRow(String line) {
+    Matcher matcher = Xref.REGEX_SUBSECTION.matcher(line.trim());
+    if (matcher.matches()) this.number =
+      Xref.parseDigits(matcher.group(1)); else if (!line.trim().isEmpty()) {
+      String moved = moveEntry(line);
+      if (moved != null) {
+        this.freed |= moved.charAt(ENTRY - 1) == Xref.FREE;
+        line = moved;
+      }
+      if (
+        line.charAt(ENTRY - 1) == Xref.FREE && this.number <= Integer.MAX_VALUE
+      ) this.frees.put(this.number, this.rows.size());
+      this.number++;
+    }
+    this.rows.add(line);
+  }
+
+  /**
+   * Writes and clears its rows. If an entry was freed, then each free entry is
+   * first linked to the next by object number, and the last to object 0.
+   */
+  private void writeRows() throws IOException {
+    if (this.freed) for (
+      Map.Entry<Long, Integer> entry : this.frees.entrySet()
+    ) {
+      Long next = this.frees.higherKey(entry.getKey());
+      String row = this.rows.get(entry.getValue());
+      Matcher matcher = REGEX_ROW.matcher(row);
+      if (!matcher.matches()) continue;
+      StringBuilder out = new StringBuilder(row.length());
+      Xref.appendEntry(
+        out,
+        next == null ? 0 : next,
+        Integer.parseInt(matcher.group(1)),
+        Xref.FREE
+      );
+      out.setLength(ENTRY);
+      this.rows.set(
+        entry.getValue(),
+        out.append(row, ENTRY, row.length()).toString()
+      );
+    }
+    for (String row : this.rows) getContext().writeString(row);
+    this.rows.clear();
+    this.frees.clear();
+    this.number = 0;
+    this.freed = false;
+  }
+
+  /**
+   * Returns the given in-use cross-reference entry with its moved offset, or
+   * freed if its object is cut. This returns null if it is unchanged.
+   */
+  private String moveEntry(String line) {
+    Matcher matcher = REGEX_ENTRY.matcher(line);
+    if (!matcher.lookingAt()) return null;
+    long offset = Long.parseLong(matcher.group(1));
+    Long moved = this.moves.get(offset);
+    if (moved == null || moved == offset) return null;
+    int gen = Integer.parseInt(matcher.group(2));
+    StringBuilder out = new StringBuilder(line.length());
+    if (moved == NUL_INT) Xref.appendEntry(
+      out,
+      0,
+      Math.min(Xref.MAX_GEN, gen + 1),
+      Xref.FREE
+    ); else Xref.appendEntry(out, moved, gen, Xref.IN_USE);
+    out.setLength(ENTRY);
+    return out.append(line, ENTRY, line.length()).toString();
+  }
+
+  /**
+   * Returns the given `startxref` offset line moved, or null if it is
+   * unchanged.
+   */
+  private String moveOffset(String line) {
+    String digits = line.trim();
+    if (!REGEX_OFFSET.matcher(digits).matches()) return null;
+    Long moved = this.moves.get(Xref.parseDigits(digits));
+    return moved == null || moved == NUL_INT ? null : moved.toString();
+  }
+
+  /**
+   * Returns the given trailer line with its {@code /Prev} offset moved, or null
+   * if it is unchanged.
+   */
+  private String movePrev(String line) {
+    Matcher matcher = REGEX_PREV.matcher(line);
+    if (!matcher.find()) return null;
+    Long moved = this.moves.get(Xref.parseDigits(matcher.group(1)));
+    if (moved == null || moved == NUL_INT) return null;
+    return (
+      line.substring(0, matcher.start(1)) +
+      moved +
+      line.substring(matcher.end(1))
+    );
+  }
+
+  /** Writes its line by its mode, then returns whether it was changed. */
+  private boolean writeLine() throws IOException {
+    switch (getContext().getMode()) {
+      case PDF:
+        getContext().setMode(Mode.PAGES);
+      case PAGES:
+        writePages();
+        break;
+      case PAGE:
+        return writePage();
+      case XREF:
+        writeXref();
+        break;
+      case DONE:
+        getContext().writeBuffer();
+        break;
+    }
+    return false;
+  }
+
+  private boolean writePage() throws IOException {
+    if (getContext().lineMatches(REGEX_CONTENTS)) {
+      String line = getContext().getLine();
+      String[] contents = line.split(SPACE);
+      StringBuilder builder = new StringBuilder(line.length());
+      for (int index = 0; index < contents.length - 4; index++) builder
+        .append(contents[index])
+        .append(SPACE);
+      getContext()
+        .writeString(
+          builder.append(contents[contents.length - 4]).append("]").toString()
+        );
+      return true;
+    }
+    seek(REGEX_CATALOG, Mode.XREF);
+    getContext().writeBuffer();
+    return false;
+  }
+
+  private void writePages() throws IOException {
+    readPages();
+    getContext().writeBuffer();
+  }
+
+  private void writeXref() throws IOException {
+    if (getContext().isNotInObj()) if (getContext().isMarkSet()) {
+      if (getContext().lineMatches(REGEX_STARTXREF)) {
+        getContext().writeBuffer();
+        getContext().readLine();
+        getContext().writeMark();
+        getContext().setMode(Mode.DONE);
+        return;
+      }
+    } else {
+      int index = getContext().getLine().indexOf(XREF);
+      if (index > -1) getContext().setMark(getContext().getSize() + index);
+    }
+    getContext().writeBuffer();
+  }
+
+  /** Returns its recyclable execution context. */
+  protected Context getContext() {
+    return this.context;
+  }
+}
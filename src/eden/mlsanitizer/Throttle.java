@@ -0,0 +1,178 @@
+package eden.mlsanitizer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles I/O streams and channels of every thread with one shared token
+ * bucket. Each transfer takes as many tokens as bytes, and a thread that finds
+ * the bucket in debt sleeps it off, even if other threads ran it up, so the
+ * rate holds across threads. In the background, a thread also pauses when the
+ * latency of its transfers rises well above the lowest latency seen, which
+ * yields the disk to others. Instances are thread-safe.
+ *
+ * @author Brendon
+ */
+public class Throttle {
+
+  /** Copy buffer capacity. */
+  protected static final int CAPACITY = 65536;
+  /** Factor of the lowest latency above which transfers pause. */
+  protected static final int FACTOR = 4;
+  /** Lowest latency considered in nanoseconds. */
+  protected static final long FLOOR = TimeUnit.MICROSECONDS.toNanos(50);
+  /** Longest pause in nanoseconds. */
+  protected static final long PAUSE_MAX = TimeUnit.MILLISECONDS.toNanos(250);
+  /** Weight of a new latency sample, as a power of 2. */
+  protected static final int SHIFT = 3;
+
+  /** Rate in bytes per second, or 0 if unlimited. */
+  protected final long rate;
+  /** Whether to pause when latency rises. */
+  protected final boolean background;
+  /** Available tokens, negative if in debt. */
+  protected double tokens;
+  /** Time of the last refill in {@link System#nanoTime()}. */
+  protected long refilled = System.nanoTime();
+  /** Moving average and lowest moving average of latency in nanoseconds. */
+  protected long latency = 0, lowest = Long.MAX_VALUE >> 1;
+
+  /**
+   * Makes an instance with the given rate in bytes per second, or 0 if
+   * unlimited, that pauses when latency rises if {@code background} is true.
+   */
+  protected Throttle(long rate, boolean background) {
+    this.rate = rate;
+    this.background = background;
+    this.tokens = rate;
+  }
+
+  /** Returns the given InputStream throttled by itself. */
+  protected InputStream wrap(InputStream in) {
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+        long start = System.nanoTime();
+        int out = super.read();
+        take(out < 0 ? 0 : 1, System.nanoTime() - start);
+        return out;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length)
+        throws IOException {
+        long start = System.nanoTime();
+        int out = super.read(bytes, offset, length);
+        take(Math.max(0, out), System.nanoTime() - start);
+        return out;
+      }
+    };
+  }
+
+  /** Returns the given OutputStream throttled by itself. */
+  protected OutputStream wrap(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int acc) throws IOException {
+        long start = System.nanoTime();
+        this.out.write(acc);
+        take(1, System.nanoTime() - start);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length)
+        throws IOException {
+        long start = System.nanoTime();
+        this.out.write(bytes, offset, length);
+        take(length, System.nanoTime() - start);
+      }
+    };
+  }
+
+  /** Returns the given WritableByteChannel throttled by itself. */
+  protected WritableByteChannel wrap(WritableByteChannel out) {
+    return new WritableByteChannel() {
+      @Override
+      public int write(ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        int count = out.write(buffer);
+        take(count, System.nanoTime() - start);
+        return count;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return out.isOpen();
+      }
+
+      @Override
+      public void close() throws IOException {
+        out.close();
+      }
+    };
+  }
+
+  /**
+   * Copies the file at the given path to the other given path through itself,
+   * replacing the latter if it exists.
+   */
+  protected void copy(Path in, Path out) throws IOException {
+    byte[] buffer = new byte[CAPACITY];
+    int count;
+    try (
+      InputStream input = wrap(Files.newInputStream(in));
+      OutputStream output = wrap(Files.newOutputStream(out))
+    ) {
+      while ((count = input.read(buffer)) > -1) output.write(buffer, 0, count);
+    }
+  }
+
+  /**
+   * Takes the given number of tokens for a transfer of the given latency, then
+   * sleeps off the debt of the shared bucket, which includes tokens taken by
+   * other threads, or any pause. A caller may thus wait for bytes that are not
+   * its own.
+   */
+  protected void take(long count, long latency) throws InterruptedIOException {
+    long sleep = 0;
+    synchronized (this) {
+      if (this.rate > 0) {
+        long now = System.nanoTime();
+        this.tokens =
+          Math.min(
+            this.rate,
+            this.tokens + (now - this.refilled) * (double) this.rate / 1e9
+          );
+        this.refilled = now;
+        this.tokens -= count;
+        if (this.tokens < 0) sleep = (long) (-this.tokens * 1e9 / this.rate);
+      }
+      if (this.background && count > 0) {
+        this.latency += (latency - this.latency) >> SHIFT;
+        // The lowest latency creeps up to follow lasting changes.
+        this.lowest =
+          Math.min(
+            this.lowest + (this.lowest >> 10),
+            Math.max(FLOOR, this.latency)
+          );
+        if (this.latency > this.lowest * FACTOR) sleep =
+          Math.max(sleep, Math.min(PAUSE_MAX, this.latency * FACTOR));
+      }
+    }
+    if (sleep > 0) try {
+      TimeUnit.NANOSECONDS.sleep(sleep);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package eden.mlsanitizer;
+
+import eden.common.excep.EDENExceptions;
+import eden.mlsanitizer.excep.BadPDFException;
+import eden.mlsanitizer.excep.PDFContentsException;
+import eden.mlsanitizer.excep.PDFOffsetException;
+import eden.mlsanitizer.excep.PDFXrefException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies the structure of a PDF with positioned reads. Every cross-reference
+ * offset must land on its object header, and every `/Contents` array must
+ * reference only objects in use. Only the head of each object is read, besides
+ * object streams which are decoded once each, so its cost is proportional to
+ * the number of objects rather than the PDF size.
+ *
+ * @author Brendon
+ */
+public class Verifier {
+
+  protected static final Pattern REGEX_CONTENTS = Pattern.compile(
+    "/Contents\\s*(\\[[^\\]]*\\]|\\p{Digit}+\\s+\\p{Digit}+\\s+R)"
+  );
+  protected static final Pattern REGEX_FIRST = Pattern.compile(
+    "/First\\s+(\\p{Digit}+)"
+  );
+  protected static final Pattern REGEX_OBJSTM = Pattern.compile(
+    "/Type\\s*/ObjStm\\b"
+  );
+  protected static final Pattern REGEX_REF = Pattern.compile(
+    "(\\p{Digit}+)\\s+\\p{Digit}+\\s+R"
+  );
+
+  /** Item label for exceptions. */
+  protected final String label;
+
+  /** Makes an instance with the given label. */
+  protected Verifier(String label) {
+    this.label = label;
+  }
+
+  /** Verifies the PDF at the given path. */
+  protected void verify(Path path) throws BadPDFException, IOException {
+    try (
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+    ) {
+      Xref xref = new Xref(channel, this.label).read();
+      String head;
+      for (int number = 0; number < xref.getSize(); number++) {
+        if (!xref.isInUse(number) || xref.isCompressed(number)) continue;
+        head = Xref.readHead(channel, xref.getOffset(number));
+        verifyHeader(xref, number, head);
+        if (REGEX_OBJSTM.matcher(head).find()) verifyObjStm(
+          xref,
+          number,
+          head,
+          Xref.readStream(channel, xref.getOffset(number), head)
+        ); else verifyContents(xref, number, head);
+      }
+    }
+  }
+
+  /** Verifies that the given head starts with the header of its object. */
+  protected void verifyHeader(Xref xref, int number, String head)
+    throws BadPDFException {
+    Matcher matcher = Xref.REGEX_HEADER.matcher(head);
+    if (
+      !matcher.lookingAt() ||
+      Xref.parseDigits(matcher.group(1)) != number ||
+      Xref.parseDigits(matcher.group(2)) != xref.getGen(number)
+    ) throw new PDFOffsetException(
+      EDENExceptions.makeSubject(
+        this.label,
+        Integer.toString(number),
+        Long.toString(xref.getOffset(number))
+      )
+    );
+  }
+
+  /**
+   * Verifies the objects in the given object stream with the given head and
+   * decoded data.
+   */
+  protected void verifyObjStm(Xref xref, int number, String head, byte[] data)
+    throws BadPDFException {
+    Matcher matcher = REGEX_FIRST.matcher(head);
+    if (data == null || !matcher.find()) throw new PDFXrefException(
+      EDENExceptions.makeSubject(this.label, Integer.toString(number))
+    );
+    String string = new String(data, StandardCharsets.ISO_8859_1);
+    try {
+      int first = Integer.parseInt(matcher.group(1));
+      String[] pairs = string.substring(0, first).trim().split("\\s+");
+      for (int index = 0; index + 1 < pairs.length; index += 2) verifyContents(
+        xref,
+        Integer.parseInt(pairs[index]),
+        string.substring(
+          first + Integer.parseInt(pairs[index + 1]),
+          index + 3 < pairs.length
+            ? first + Integer.parseInt(pairs[index + 3])
+            : string.length()
+        )
+      );
+    } catch (IndexOutOfBoundsException | NumberFormatException exception) {
+      throw new PDFXrefException(
+        EDENExceptions.makeSubject(this.label, Integer.toString(number))
+      );
+    }
+  }
+
+  /**
+   * Verifies that the `/Contents` array of the given object, if any, references
+   * only objects in use.
+   */
+  protected void verifyContents(Xref xref, int number, String head)
+    throws BadPDFException {
+    Matcher matcher = REGEX_CONTENTS.matcher(head);
+    if (!matcher.find()) return;
+    matcher = REGEX_REF.matcher(matcher.group(1));
+    long reference;
+    while (matcher.find()) {
+      reference = Xref.parseDigits(matcher.group(1));
+      if (
+        reference > Integer.MAX_VALUE || !xref.isInUse((int) reference)
+      ) throw new PDFContentsException(
+        EDENExceptions.makeSubject(
+          this.label,
+          Integer.toString(number),
+          Long.toString(reference)
+        )
+      );
+    }
+  }
+}
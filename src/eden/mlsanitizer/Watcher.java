@@ -0,0 +1,203 @@
+package eden.mlsanitizer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory for PDFs and hands each one to its worker threads once it
+ * has stopped changing. A file is stable when its size and modification time
+ * have not changed for {@link #SETTLE} milliseconds. Outputs are recognized by
+ * their suffix and are never handed over. Instances must be closed after use.
+ *
+ * @author Brendon
+ */
+public class Watcher implements AutoCloseable {
+
+  /** Input filename extension. */
+  protected static final String EXTENSION = ".pdf";
+  /** Polling interval in milliseconds. */
+  protected static final long POLL = 250;
+  /** Time in milliseconds for which a file must be unchanged. */
+  protected static final long SETTLE = 1000;
+
+  /** Watched directory. */
+  protected final Path directory;
+  /** Input handler. */
+  protected final Consumer<Path> handler;
+  /** Worker threads. */
+  protected final ExecutorService workers;
+  /** Unstable files by path. */
+  protected final Map<Path, Pending> pending = new HashMap<>();
+  /** Files handed over and not yet handled. */
+  protected final Set<Path> queued = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Makes an instance that watches the given directory and hands stable files
+   * to the given handler with the given number of worker threads.
+   */
+  protected Watcher(Path directory, int threads, Consumer<Path> handler) {
+    this.directory = directory;
+    this.handler = handler;
+    this.workers =
+      Executors.newFixedThreadPool(
+        threads,
+        runnable -> {
+          Thread thread = new Thread(runnable, "Watcher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      );
+  }
+
+  /**
+   * Watches its directory until it is gone or the current thread is
+   * interrupted. Files already present are handled first.
+   */
+  protected void watch() throws IOException {
+    try (
+      WatchService service = this.directory.getFileSystem().newWatchService()
+    ) {
+      this.directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+      scan();
+      WatchKey key;
+      while (true) {
+        try {
+          key = service.poll(POLL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) if (
+            event.kind() == OVERFLOW
+          ) scan(); else touch(this.directory.resolve((Path) event.context()));
+          if (!key.reset()) return;
+        }
+        settle();
+      }
+    }
+  }
+
+  /** Tracks every acceptable file in its directory. */
+  protected void scan() throws IOException {
+    try (
+      DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)
+    ) {
+      for (Path path : stream) touch(path);
+    }
+  }
+
+  /** Tracks the given file if it is acceptable. */
+  protected void touch(Path path) {
+    if (
+      isAcceptable(path) && !this.pending.containsKey(path)
+    ) this.pending.put(path, new Pending());
+  }
+
+  /** Hands over tracked files that have become stable. */
+  protected void settle() {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<Path, Pending>> iterator =
+      this.pending.entrySet().iterator();
+    Map.Entry<Path, Pending> entry;
+    long size, modified;
+    while (iterator.hasNext()) {
+      entry = iterator.next();
+      try {
+        size = Files.size(entry.getKey());
+        modified = Files.getLastModifiedTime(entry.getKey()).toMillis();
+      } catch (IOException exception) {
+        iterator.remove();
+        continue;
+      }
+      if (entry.getValue().update(size, modified, now)) continue;
+      if (
+        now - entry.getValue().since < SETTLE ||
+        !this.queued.add(entry.getKey())
+      ) continue;
+      iterator.remove();
+      submit(entry.getKey());
+    }
+  }
+
+  /** Hands the given file to its worker threads. */
+  protected void submit(Path path) {
+    this.workers.execute(() -> {
+        try {
+          this.handler.accept(path);
+        } finally {
+          this.queued.remove(path);
+        }
+      }
+    );
+  }
+
+  /**
+   * Returns whether the given file is a regular PDF that is not an output of
+   * this application.
+   */
+  protected static boolean isAcceptable(Path path) {
+    String name = path.getFileName().toString();
+    return (
+      name.regionMatches(
+        true,
+        name.length() - EXTENSION.length(),
+        EXTENSION,
+        0,
+        EXTENSION.length()
+      ) &&
+      !name.contains(MLSanitizer.SUFFIX) &&
+      Files.isRegularFile(path)
+    );
+  }
+
+  /** Waits for handed over files to be handled, then stops its workers. */
+  @Override
+  public void close() {
+    this.workers.shutdown();
+    try {
+      this.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Encapsulates the last observed state of an unstable file. */
+  protected static class Pending {
+
+    /** Last observed size and modification time. */
+    protected long size = -1, modified = -1;
+    /** Time of the last observed change. */
+    protected long since;
+
+    /**
+     * Records the given observation at the given time, then returns whether it
+     * is a change.
+     */
+    protected boolean update(long size, long modified, long now) {
+      if (size == this.size && modified == this.modified) return false;
+      this.size = size;
+      this.modified = modified;
+      this.since = now;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,598 @@
+package eden.mlsanitizer;
+
+import static eden.common.shared.Constants.NUL_INT;
+
+import eden.common.excep.EDENExceptions;
+import eden.mlsanitizer.excep.BadPDFException;
+import eden.mlsanitizer.excep.PDFXrefException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Encapsulates a cross-reference table that is read with positioned reads.
+ * Sections chained with {@code /Prev} are merged, with later sections taking
+ * precedence over earlier ones.
+ *
+ * @author Brendon
+ */
+public class Xref {
+
+  /** Free entry type. */
+  protected static final byte FREE = 'f';
+  /** In-use entry type. */
+  protected static final byte IN_USE = 'n';
+  /** Compressed in-use entry type. */
+  protected static final byte COMPRESSED = 'c';
+  /** Greatest generation number. */
+  protected static final int MAX_GEN = 65535;
+  /** Entry length in bytes. */
+  protected static final int ENTRY = 20;
+  /** Number of entries to read at once. */
+  protected static final int ENTRIES = 1024;
+  /** Number of bytes to read first per object head. */
+  protected static final int HEAD = 512;
+  /** Maximum number of bytes to read per object head. */
+  protected static final int HEAD_MAX = 16384;
+  /** Number of bytes to read per line. */
+  protected static final int LINE = 256;
+  /** Number of bytes from the end-of-file to search for `startxref`. */
+  protected static final int TAIL = 1024;
+  /** Number of bytes to read per trailer. */
+  protected static final int TRAILER = 4096;
+  /** endobj command. */
+  protected static final String ENDOBJ = "endobj";
+  /** stream command. */
+  protected static final String STREAM = "stream";
+  /** startxref command. */
+  protected static final String STARTXREF = "startxref";
+  /** trailer command. */
+  protected static final String TRAILER_COMMAND = "trailer";
+  /** xref command. */
+  protected static final String XREF = "xref";
+  protected static final Pattern REGEX_FLATE = Pattern.compile(
+    "/Filter\\s*\\[?\\s*/FlateDecode\\s*\\]?"
+  );
+  protected static final Pattern REGEX_HEADER = Pattern.compile(
+    "\\A(\\p{Digit}+)\\s+(\\p{Digit}+)\\s+obj\\b"
+  );
+  protected static final Pattern REGEX_INDEX = Pattern.compile(
+    "/Index\\s*\\[([\\p{Digit}\\s]*)\\]"
+  );
+  protected static final Pattern REGEX_LENGTH = Pattern.compile(
+    "/Length\\s+(\\p{Digit}++)(?!\\s+\\p{Digit}+\\s+R)"
+  );
+  protected static final Pattern REGEX_NUMBER = Pattern.compile(
+    "\\s*(\\p{Digit}+)"
+  );
+  protected static final Pattern REGEX_INFO = Pattern.compile(
+    "/Info\\s+(\\p{Digit}+)\\s+\\p{Digit}+\\s+R"
+  );
+  protected static final Pattern REGEX_PREV = Pattern.compile(
+    "/Prev\\s+(\\p{Digit}+)"
+  );
+  protected static final Pattern REGEX_ROOT = Pattern.compile(
+    "/Root\\s+(\\p{Digit}+)\\s+\\p{Digit}+\\s+R"
+  );
+  protected static final Pattern REGEX_SIZE = Pattern.compile(
+    "/Size\\s+(\\p{Digit}+)"
+  );
+  protected static final Pattern REGEX_SUBSECTION = Pattern.compile(
+    "^(\\p{Digit}+)\\s+(\\p{Digit}+)$"
+  );
+  protected static final Pattern REGEX_W = Pattern.compile(
+    "/W\\s*\\[\\s*(\\p{Digit})\\s+(\\p{Digit})\\s+(\\p{Digit})\\s*\\]"
+  );
+
+  /** Input PDF channel. */
+  protected final FileChannel channel;
+  /** Item label for exceptions. */
+  protected final String label;
+  /** Entry offsets by object number. */
+  protected long[] offsets;
+  /** Entry generation numbers by object number. */
+  protected int[] gens;
+  /** Entry types by object number, 0 if absent. */
+  protected byte[] types;
+  /** Offset of the latest section. */
+  protected long startxref;
+  /** Line cursor. */
+  protected long cursor;
+  /** Object numbers of the catalog and Info dictionary. */
+  protected int root = NUL_INT, info = NUL_INT;
+  /** Latest trailer. */
+  protected String trailer;
+
+  /**
+   * Makes an instance with the given channel and label. This does not read
+   * anything until {@link #read()} is called.
+   */
+  protected Xref(FileChannel channel, String label) {
+    this.channel = channel;
+    this.label = label;
+  }
+
+  /**
+   * Returns at most the given number of bytes from the given channel at the
+   * given position.
+   */
+  protected static byte[] readBytes(
+    FileChannel channel,
+    long position,
+    int length
+  ) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    int count;
+    while (
+      buffer.hasRemaining() &&
+      (count = channel.read(buffer, position + buffer.position())) > -1
+    ) if (count == 0) break;
+    return buffer.position() == length
+      ? buffer.array()
+      : Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * Returns at most the given number of bytes from the given channel at the
+   * given position as an ISO 8859-1 string.
+   */
+  protected static String read(FileChannel channel, long position, int length)
+    throws IOException {
+    return new String(
+      readBytes(channel, position, length),
+      StandardCharsets.ISO_8859_1
+    );
+  }
+
+  /**
+   * Returns the head of the object at the given position, which ends before its
+   * stream or `endobj`.
+   */
+  protected static String readHead(FileChannel channel, long position)
+    throws IOException {
+    String head;
+    int index;
+    for (int length = HEAD;; length *= 2) {
+      head = read(channel, position, length);
+      index = head.indexOf(STREAM);
+      if (index < 0) index = head.indexOf(ENDOBJ); else {
+        int endobj = head.indexOf(ENDOBJ);
+        if (endobj > -1) index = Math.min(index, endobj);
+      }
+      if (index > -1) return head.substring(0, index);
+      if (head.length() < length || length >= HEAD_MAX) return head;
+    }
+  }
+
+  /**
+   * Returns the decoded data of the stream object at the given position with
+   * the given head, or null if its length is not direct or runs past the
+   * end-of-file. Only Flate-compressed or uncompressed streams are supported.
+   */
+  protected static byte[] readStream(
+    FileChannel channel,
+    long position,
+    String head
+  ) throws IOException {
+    Matcher matcher = REGEX_LENGTH.matcher(head);
+    if (!matcher.find()) return null;
+    position += head.length() + STREAM.length();
+    byte[] eol = readBytes(channel, position, 2);
+    int index = 0;
+    if (index < eol.length && eol[index] == '\r') index++;
+    if (index < eol.length && eol[index] == '\n') index++;
+    position += index;
+    long length = parseDigits(matcher.group(1));
+    if (
+      length > Math.min(Integer.MAX_VALUE, channel.size() - position)
+    ) return null;
+    byte[] data = readBytes(channel, position, (int) length);
+    return REGEX_FLATE.matcher(head).find() ? inflate(data) : data;
+  }
+
+  /** Decompresses the given Flate-compressed bytes. */
+  protected static byte[] inflate(byte[] bytes) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+      byte[] buffer = new byte[8192];
+      int count;
+      while (!inflater.finished()) {
+        count = inflater.inflate(buffer);
+        if (
+          count == 0 && (inflater.needsInput() || inflater.needsDictionary())
+        ) break;
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException exception) {
+      throw new ZipException(exception.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Returns a single-section table of the given entries, from object 0. Entries
+   * not in use are chained into the free list with their given generation
+   * numbers.
+   */
+  protected static String format(long[] offsets, int[] gens, BitSet used) {
+    StringBuilder out = new StringBuilder((offsets.length + 2) * ENTRY);
+    out
+      .append(XREF)
+      .append('\n')
+      .append(0)
+      .append(' ')
+      .append(offsets.length)
+      .append('\n');
+    for (int number = 0; number < offsets.length; number++) if (
+      used.get(number)
+    ) appendEntry(out, offsets[number], gens[number], IN_USE); else {
+      int next = used.nextClearBit(number + 1);
+      appendEntry(
+        out,
+        next < offsets.length ? next : 0,
+        number == 0 ? MAX_GEN : Math.min(MAX_GEN, gens[number]),
+        FREE
+      );
+    }
+    return out.toString();
+  }
+
+  /** Appends the given entry to the given builder. */
+  protected static void appendEntry(
+    StringBuilder builder,
+    long offset,
+    int gen,
+    byte type
+  ) {
+    String string = Long.toString(offset);
+    for (int index = string.length(); index < 10; index++) builder.append('0');
+    builder.append(string).append(' ');
+    string = Integer.toString(gen);
+    for (int index = string.length(); index < 5; index++) builder.append('0');
+    builder.append(string).append(' ').append((char) type).append(" \n");
+  }
+
+  /** Reads all sections from the one pointed by `startxref`. */
+  protected Xref read() throws BadPDFException, IOException {
+    long size = this.channel.size();
+    String tail = read(Math.max(0, size - TAIL), TAIL);
+    int index = tail.lastIndexOf(STARTXREF);
+    if (index < 0) throw exception(STARTXREF);
+    this.startxref = parseNumber(tail, index + STARTXREF.length());
+    Set<Long> visited = new HashSet<>();
+    long position = this.startxref;
+    while (position != NUL_INT) {
+      if (!visited.add(position) || position >= size) throw exception(
+        Long.toString(position)
+      );
+      position = readSection(position);
+    }
+    return this;
+  }
+
+  /**
+   * Reads the section at the given position, then returns the position of its
+   * previous section, or {@code NUL_INT} if there is none.
+   */
+  protected long readSection(long position)
+    throws BadPDFException, IOException {
+    this.cursor = position;
+    String line = readLine();
+    if (REGEX_HEADER.matcher(line).lookingAt()) return readStreamSection(
+      position
+    );
+    if (!line.equals(XREF)) throw exception(Long.toString(position));
+    List<long[]> subsections = new ArrayList<>();
+    Matcher matcher;
+    long start;
+    long count;
+    while (true) {
+      start = this.cursor;
+      line = readLine();
+      if (line.startsWith(TRAILER_COMMAND)) break;
+      matcher = REGEX_SUBSECTION.matcher(line);
+      if (!matcher.matches()) throw exception(Long.toString(start));
+      count =
+        parseBounded(
+          matcher.group(2),
+          (this.channel.size() - this.cursor) / ENTRY,
+          Long.toString(start)
+        );
+      subsections.add(
+        new long[] {
+          this.cursor,
+          parseBounded(
+            matcher.group(1),
+            Integer.MAX_VALUE - count,
+            Long.toString(start)
+          ),
+          count,
+        }
+      );
+      this.cursor += count * ENTRY;
+    }
+    String trailer = read(start, TRAILER);
+    trailer =
+      trailer.substring(
+        trailer.indexOf(TRAILER_COMMAND) + TRAILER_COMMAND.length()
+      );
+    int index = trailer.indexOf(STARTXREF);
+    if (index > -1) trailer = trailer.substring(0, index);
+    if (this.trailer == null) readTrailer(trailer);
+    for (long[] subsection : subsections) {
+      this.cursor = subsection[0];
+      readEntries((int) subsection[1], (int) subsection[2]);
+    }
+    matcher = REGEX_PREV.matcher(trailer);
+    return matcher.find() ? parseDigits(matcher.group(1)) : NUL_INT;
+  }
+
+  /**
+   * Reads the cross-reference stream at the given position, then returns the
+   * position of its previous section, or {@code NUL_INT} if there is none.
+   */
+  protected long readStreamSection(long position)
+    throws BadPDFException, IOException {
+    String head = readHead(this.channel, position);
+    byte[] rows = readStream(this.channel, position, head);
+    Matcher matcher = REGEX_W.matcher(head);
+    if (rows == null || !matcher.find()) throw exception(
+      Long.toString(position)
+    );
+    if (this.trailer == null) readTrailer(head);
+    int[] widths = new int[3];
+    for (int index = 0; index < 3; index++) widths[index] =
+      Integer.parseInt(matcher.group(index + 1));
+    int width = widths[0] + widths[1] + widths[2];
+    matcher = REGEX_INDEX.matcher(head);
+    String[] subsections;
+    if (matcher.find()) subsections =
+      matcher.group(1).trim().split("\\s+"); else {
+      matcher = REGEX_SIZE.matcher(head);
+      subsections =
+        new String[] { "0", matcher.find() ? matcher.group(1) : "0" };
+    }
+    int row = 0, number, type;
+    long rowCount = rows.length / Math.max(1, width);
+    for (int index = 0; index + 1 < subsections.length; index += 2) {
+      number =
+        (int) parseBounded(
+          subsections[index],
+          Integer.MAX_VALUE - rowCount,
+          Long.toString(position)
+        );
+      for (
+        long count = parseBounded(
+          subsections[index + 1],
+          rowCount,
+          Long.toString(position)
+        );
+        count > 0;
+        count--, number++, row++
+      ) {
+        if ((row + 1) * width > rows.length) throw exception(
+          Long.toString(position)
+        );
+        if (number >= getSize() || this.types[number] != 0) continue;
+        type =
+          widths[0] == 0 ? 1 : (int) parseField(rows, row * width, widths[0]);
+        switch (type) {
+          case 0:
+            this.types[number] = FREE;
+            break;
+          case 1:
+            this.types[number] = IN_USE;
+            break;
+          case 2:
+            this.types[number] = COMPRESSED;
+            break;
+          default:
+            continue;
+        }
+        this.offsets[number] =
+          parseField(rows, row * width + widths[0], widths[1]);
+        this.gens[number] =
+          (int) parseField(
+            rows,
+            row * width + widths[0] + widths[1],
+            widths[2]
+          );
+      }
+    }
+    matcher = REGEX_PREV.matcher(head);
+    return matcher.find() ? parseDigits(matcher.group(1)) : NUL_INT;
+  }
+
+  /** Parses the big-endian field of the given width at the given index. */
+  protected static long parseField(byte[] bytes, int index, int width) {
+    long out = 0;
+    for (int end = index + width; index < end; index++) out =
+      (out << 8) | (bytes[index] & 0xFF);
+    return out;
+  }
+
+  /** Reads the given number of entries from the given object number. */
+  protected void readEntries(int first, int count)
+    throws BadPDFException, IOException {
+    String entries, entry;
+    int length, number;
+    for (int done = 0; done < count; done += length) {
+      length = Math.min(ENTRIES, count - done);
+      entries = read(this.cursor, length * ENTRY);
+      if (entries.length() < length * ENTRY) throw exception(
+        Long.toString(this.cursor)
+      );
+      for (int index = 0; index < length; index++) {
+        number = first + done + index;
+        entry = entries.substring(index * ENTRY, (index + 1) * ENTRY);
+        if (number >= getSize() || this.types[number] != 0) continue;
+        this.types[number] = (byte) entry.charAt(17);
+        if (
+          this.types[number] != FREE && this.types[number] != IN_USE
+        ) throw exception(Integer.toString(number));
+        try {
+          this.offsets[number] = Long.parseLong(entry.substring(0, 10));
+          this.gens[number] = Integer.parseInt(entry.substring(11, 16));
+        } catch (NumberFormatException exception) {
+          throw exception(Integer.toString(number));
+        }
+      }
+      this.cursor += length * ENTRY;
+    }
+  }
+
+  /**
+   * Reads the given latest trailer. Its size is bounded by that of its
+   * channel, as every entry takes at least a byte.
+   */
+  protected void readTrailer(String trailer)
+    throws BadPDFException, IOException {
+    this.trailer = trailer;
+    Matcher matcher = REGEX_SIZE.matcher(trailer);
+    if (!matcher.find()) throw exception(TRAILER_COMMAND);
+    int size = (int) parseBounded(
+      matcher.group(1),
+      Math.min(Integer.MAX_VALUE - 8, this.channel.size()),
+      TRAILER_COMMAND
+    );
+    this.offsets = new long[size];
+    this.gens = new int[size];
+    this.types = new byte[size];
+    matcher = REGEX_ROOT.matcher(trailer);
+    if (matcher.find()) this.root =
+      (int) parseBounded(matcher.group(1), Integer.MAX_VALUE, TRAILER_COMMAND);
+    matcher = REGEX_INFO.matcher(trailer);
+    if (matcher.find()) this.info =
+      (int) parseBounded(matcher.group(1), Integer.MAX_VALUE, TRAILER_COMMAND);
+  }
+
+  /**
+   * Reads and returns the trimmed line at its line cursor. Lines longer than
+   * {@link #LINE} are cut short.
+   */
+  protected String readLine() throws BadPDFException, IOException {
+    String line = read(this.cursor, LINE);
+    if (line.isEmpty()) throw exception(Long.toString(this.cursor));
+    int index = 0;
+    while (
+      index < line.length() &&
+      line.charAt(index) != '\n' &&
+      line.charAt(index) != '\r'
+    ) index++;
+    this.cursor += index;
+    while (
+      index < line.length() &&
+      (line.charAt(index) == '\n' || line.charAt(index) == '\r')
+    ) {
+      index++;
+      this.cursor++;
+    }
+    return line.substring(0, index).trim();
+  }
+
+  /** Returns at most the given number of bytes at the given position. */
+  protected String read(long position, int length) throws IOException {
+    return read(this.channel, position, length);
+  }
+
+  /** Parses the number in the given string at the given index. */
+  protected long parseNumber(String string, int index) throws BadPDFException {
+    Matcher matcher = REGEX_NUMBER.matcher(string).region(index, string.length());
+    if (!matcher.lookingAt()) throw exception(STARTXREF);
+    return parseDigits(matcher.group(1));
+  }
+
+  /**
+   * Parses the given digits, then returns them if they are at most the given
+   * maximum. Otherwise, this throws about the given detail.
+   */
+  protected long parseBounded(String digits, long max, String detail)
+    throws BadPDFException {
+    long out = parseDigits(digits);
+    if (out > max) throw exception(detail);
+    return out;
+  }
+
+  /**
+   * Parses the given digits, saturating at {@link Long#MAX_VALUE} rather than
+   * overflowing.
+   */
+  protected static long parseDigits(String digits) {
+    try {
+      return Long.parseLong(digits);
+    } catch (NumberFormatException exception) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /** Makes an exception about the given detail. */
+  protected PDFXrefException exception(String detail) {
+    return new PDFXrefException(EDENExceptions.makeSubject(this.label, detail));
+  }
+
+  /** Returns its number of entries. */
+  protected int getSize() {
+    return this.types == null ? 0 : this.types.length;
+  }
+
+  /** Returns the offset of the given object. */
+  protected long getOffset(int number) {
+    return this.offsets[number];
+  }
+
+  /** Returns the generation number of the given object. */
+  protected int getGen(int number) {
+    return this.gens[number];
+  }
+
+  /** Returns whether the given object is in use. */
+  protected boolean isInUse(int number) {
+    return (
+      number >= 0 &&
+      number < getSize() &&
+      (this.types[number] == IN_USE || this.types[number] == COMPRESSED)
+    );
+  }
+
+  /** Returns whether the given object is in an object stream. */
+  protected boolean isCompressed(int number) {
+    return isInUse(number) && this.types[number] == COMPRESSED;
+  }
+
+  /** Returns the object number of the catalog, or {@code NUL_INT}. */
+  protected int getRoot() {
+    return this.root;
+  }
+
+  /** Returns the object number of the Info dictionary, or {@code NUL_INT}. */
+  protected int getInfo() {
+    return this.info;
+  }
+
+  /** Returns the offset of the latest section. */
+  protected long getStartxref() {
+    return this.startxref;
+  }
+
+  /** Returns the latest trailer dictionary. */
+  protected String getTrailer() {
+    return this.trailer;
+  }
+}
@@ -0,0 +1,22 @@
+package eden.mlsanitizer.excep;
+
+import eden.common.excep.EDENException;
+
+/**
+ * Thrown when a command-line option is unknown, has a malformed value, or
+ * conflicts with another.
+ *
+ * @author Brendon
+ */
+public class BadOptionException extends EDENException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "The option is either unknown, has a malformed value, or conflicts with " +
+    "another.";
+
+  /** Makes an instance with the given label. */
+  public BadOptionException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,20 @@
+package eden.mlsanitizer.excep;
+
+import eden.common.excep.EDENException;
+
+/**
+ * Thrown when the engines disagree on how to sanitize a file.
+ *
+ * @author Brendon
+ */
+public class EngineMismatchException extends EDENException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "The engines disagree on how to sanitize the file.";
+
+  /** Makes an instance with the given label. */
+  public EngineMismatchException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when a `/Contents` array references a removed object.
+ *
+ * @author Brendon
+ */
+public class PDFContentsException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "PDF Error: A `/Contents` array references a removed object.";
+
+  /** Makes an instance with the given label. */
+  public PDFContentsException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when a line exceeds the line length limit.
+ *
+ * @author Brendon
+ */
+public class PDFLineLimitException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "PDF Error: A line exceeds the line length limit.";
+
+  /** Makes an instance with the given label. */
+  public PDFLineLimitException(String label) {
+    super(label, PROBLEM);
+  }
+}
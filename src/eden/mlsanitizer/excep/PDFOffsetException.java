@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when a cross-reference offset does not land on its object header.
+ *
+ * @author Brendon
+ */
+public class PDFOffsetException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "PDF Error: A cross-reference offset does not land on its object header.";
+
+  /** Makes an instance with the given label. */
+  public PDFOffsetException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when the page tree is not found within the seek limit.
+ *
+ * @author Brendon
+ */
+public class PDFSeekLimitException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "PDF Error: `/Type /Pages` is not found within the seek limit.";
+
+  /** Makes an instance with the given label. */
+  public PDFSeekLimitException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when a file takes longer than the time limit to sanitize.
+ *
+ * @author Brendon
+ */
+public class PDFTimeLimitException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "The file takes longer than the time limit to sanitize.";
+
+  /** Makes an instance with the given label. */
+  public PDFTimeLimitException(String label) {
+    super(label, PROBLEM);
+  }
+}
@@ -0,0 +1,18 @@
+package eden.mlsanitizer.excep;
+
+/**
+ * Thrown when a cross-reference table is either missing or malformed.
+ *
+ * @author Brendon
+ */
+public class PDFXrefException extends BadPDFException {
+
+  /** Problem description. */
+  protected static final String PROBLEM =
+    "PDF Error: The cross-reference table is either missing or malformed.";
+
+  /** Makes an instance with the given label. */
+  public PDFXrefException(String label) {
+    super(label, PROBLEM);
+  }
+}
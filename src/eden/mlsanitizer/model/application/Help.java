@@ -10,14 +10,43 @@ import eden.mlsanitizer.MLSanitizer;
 public final class Help {
 
   /** Program usage syntax. */
-  public static final String USAGE = "Usage: <file>...";
+  public static final String USAGE = "Usage: [<option>...] <file>...";
   /** Program usage explanation. */
   public static final String EXPLANATION =
     "Each output filename appends `" +
     MLSanitizer.SUFFIX +
     "` to its " +
     "input filename before\nits extension, and will be (over)written to " +
-    "only if necessary.";
+    "only if necessary.\nOutputs of linearized inputs are linearized " +
+    "too. Inputs with identical\ncontent are sanitized once, and the " +
+    "outputs of the rest are linked or copied.\n\nOptions:\n" +
+    "  --max-line=<bytes>    Cancel files with a longer line.\n" +
+    "  --max-seek=<bytes>    Cancel files with no page tree within this " +
+    "many bytes.\n" +
+    "  --max-time=<seconds>  Cancel files taking longer to sanitize. Later " +
+    "passes, such\n                        as --compact or --verify, are " +
+    "not limited.\n" +
+    "  --max-rate=<bytes>    Limit reading and writing to this many bytes " +
+    "per second\n                        across all worker threads.\n" +
+    "  --background          Use one worker thread, and pause when I/O " +
+    "latency rises.\n" +
+    "  --compact             Drop unreachable objects from outputs.\n" +
+    "  --compress            Pack objects of outputs into object streams, " +
+    "which does\n                        not preserve linearization.\n" +
+    "  --verify              Verify the structure of outputs.\n" +
+    "  --incremental         Append changes to copies of inputs instead, " +
+    "leaving the\n                        cut content recoverable. This " +
+    "cannot be combined\n                        with --compact or " +
+    "--compress, and does not preserve\n                        " +
+    "linearization.\n" +
+    "  --engine=<name>       Engine to use: `legacy` (default) or `fast`.\n" +
+    "  --diff-check          Run both engines and compare their outputs.\n" +
+    "  --output=<dir>        Write outputs to this directory instead.\n" +
+    "  --watch=<dir>         Sanitize PDFs as they arrive in this directory, " +
+    "after\n                        the files given, until interrupted.\n" +
+    "  --jobs=<threads>      Worker threads in watch mode and for packing; " +
+    "defaults to\n                        the number of processors.\n" +
+    "Limits of 0 are unlimited, which is the default.";
 
   /** To prevent instantiations of this class. */
   private Help() {}